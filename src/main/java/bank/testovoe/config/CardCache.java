@@ -0,0 +1,121 @@
+package bank.testovoe.config;
+
+import bank.testovoe.dto.card.CardDto;
+import bank.testovoe.model.CardStatus;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache of the card DTOs a user's dashboard polls: the card list and search pages.
+ * Everything cached for a user lives in one entry, and every write that changes a user's cards
+ * publishes {@link CardsChanged}, which drops that entry once the transaction has committed.
+ * A reader that loaded from the database before the commit writes into the dropped entry, so it
+ * cannot put stale data back. Other nodes pick changes up once the TTL runs out.
+ */
+@Slf4j
+@Component
+public class CardCache {
+
+    private static final int MAX_SEARCHES_PER_USER = 32;
+
+    private final Cache<Long, UserCards> users;
+    private final Counter listHits;
+    private final Counter listMisses;
+    private final Counter searchHits;
+    private final Counter searchMisses;
+
+    public CardCache(@Value("${cards.cache.ttl:30s}") Duration ttl,
+                     @Value("${cards.cache.max-users:100000}") long maxUsers,
+                     MeterRegistry meterRegistry) {
+        this.users = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxUsers)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, users, "cards");
+        this.listHits = viewCounter(meterRegistry, "list", "hit");
+        this.listMisses = viewCounter(meterRegistry, "list", "miss");
+        this.searchHits = viewCounter(meterRegistry, "search", "hit");
+        this.searchMisses = viewCounter(meterRegistry, "search", "miss");
+    }
+
+    public List<CardDto> getCards(Long ownerId, Supplier<List<CardDto>> loader) {
+        UserCards entry = users.get(ownerId, id -> new UserCards());
+        List<CardDto> cards = entry.cards;
+        if (cards != null) {
+            listHits.increment();
+            return cards;
+        }
+        listMisses.increment();
+        cards = List.copyOf(loader.get());
+        entry.cards = cards;
+        return cards;
+    }
+
+    public Page<CardDto> search(Long ownerId, CardStatus status, BigDecimal minBalance, BigDecimal maxBalance,
+                                Pageable pageable, Supplier<Page<CardDto>> loader) {
+        UserCards entry = users.get(ownerId, id -> new UserCards());
+        SearchKey key = new SearchKey(status, minBalance, maxBalance, pageable);
+        Page<CardDto> page = entry.searches.get(key);
+        if (page != null) {
+            searchHits.increment();
+            return page;
+        }
+        searchMisses.increment();
+        page = loader.get();
+        if (entry.searches.size() >= MAX_SEARCHES_PER_USER) {
+            entry.searches.clear();
+        }
+        entry.searches.put(key, page);
+        return page;
+    }
+
+    public void evict(Long ownerId) {
+        users.invalidate(ownerId);
+    }
+
+    /**
+     * Runs after commit, so a rolled back write keeps the cache; without a transaction it runs
+     * immediately.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    void onCardsChanged(CardsChanged event) {
+        log.debug("Evicting cached cards of user {}", event.ownerId());
+        evict(event.ownerId());
+    }
+
+    private static Counter viewCounter(MeterRegistry meterRegistry, String view, String result) {
+        return meterRegistry.counter("bank.cards.cache", "view", view, "result", result);
+    }
+
+    /**
+     * Published by every write that changes the status, balance or set of a user's cards.
+     */
+    public record CardsChanged(Long ownerId) {
+    }
+
+    private static final class UserCards {
+
+        private volatile List<CardDto> cards;
+        private final Map<SearchKey, Page<CardDto>> searches = new ConcurrentHashMap<>();
+    }
+
+    private record SearchKey(CardStatus status, BigDecimal minBalance, BigDecimal maxBalance, Pageable pageable) {
+    }
+}
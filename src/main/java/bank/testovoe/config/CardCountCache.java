@@ -0,0 +1,36 @@
+package bank.testovoe.config;
+
+import bank.testovoe.model.CardStatus;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Short-lived cache of card search totals keyed by the search filters. Paging through one
+ * search counts once instead of on every page; the total may lag behind by up to the TTL.
+ */
+@Component
+public class CardCountCache {
+
+    private final Cache<Key, Long> counts;
+
+    public CardCountCache(@Value("${cards.search.count-cache.ttl:30s}") Duration ttl,
+                          @Value("${cards.search.count-cache.max-size:10000}") long maxSize) {
+        this.counts = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .build();
+    }
+
+    public long get(Long ownerId, CardStatus status, BigDecimal minBalance, BigDecimal maxBalance, LongSupplier count) {
+        return counts.get(new Key(ownerId, status, minBalance, maxBalance), key -> count.getAsLong());
+    }
+
+    private record Key(Long ownerId, CardStatus status, BigDecimal minBalance, BigDecimal maxBalance) {
+    }
+}
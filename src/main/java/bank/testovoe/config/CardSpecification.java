@@ -6,6 +6,7 @@ import bank.testovoe.model.User;
 import org.springframework.data.jpa.domain.Specification;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
 public class CardSpecification {
     public static Specification<Card> ownerIs(User user) {
@@ -17,11 +18,19 @@ public class CardSpecification {
     }
 
     public static Specification<Card> balanceGreaterThanOrEqual(BigDecimal min) {
-        return (root, query, cb) -> cb.ge(root.get("balance"), min);
+        return (root, query, cb) -> cb.ge(root.get("effectiveBalance"), min);
     }
 
     public static Specification<Card> balanceLessThanOrEqual(BigDecimal max) {
-        return (root, query, cb) -> cb.le(root.get("balance"), max);
+        return (root, query, cb) -> cb.le(root.get("effectiveBalance"), max);
     }
-}
 
+    /**
+     * Keyset predicate for listings ordered by {@code (createdAt, id)} descending.
+     */
+    public static Specification<Card> createdBefore(LocalDateTime createdAt, Long id) {
+        return (root, query, cb) -> cb.or(
+                cb.lessThan(root.get("createdAt"), createdAt),
+                cb.and(cb.equal(root.get("createdAt"), createdAt), cb.lessThan(root.get("id"), id)));
+    }
+}
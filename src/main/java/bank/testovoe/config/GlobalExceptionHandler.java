@@ -1,13 +1,18 @@
 package bank.testovoe.config;
 
 import bank.testovoe.dto.ApiError;
+import bank.testovoe.exception.BadRequestException;
+import bank.testovoe.exception.ConflictException;
 import bank.testovoe.exception.ForbiddenOperationException;
 import bank.testovoe.exception.InsufficientFundsException;
 import bank.testovoe.exception.JwtAuthenticationException;
 import bank.testovoe.exception.NotFoundException;
+import bank.testovoe.exception.ServiceUnavailableException;
+import bank.testovoe.exception.TooManyRequestsException;
 import io.swagger.v3.oas.annotations.Hidden;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -37,6 +42,29 @@ public class GlobalExceptionHandler {
         return buildResponse(HttpStatus.BAD_REQUEST, "Insufficient Funds", ex.getMessage(), request);
     }
 
+    @ExceptionHandler(BadRequestException.class)
+    public ResponseEntity<ApiError> handleBadRequest(BadRequestException ex, HttpServletRequest request) {
+        return buildResponse(HttpStatus.BAD_REQUEST, "Bad Request", ex.getMessage(), request);
+    }
+
+    @ExceptionHandler(ConflictException.class)
+    public ResponseEntity<ApiError> handleConflict(ConflictException ex, HttpServletRequest request) {
+        return buildResponse(HttpStatus.CONFLICT, "Conflict", ex.getMessage(), request);
+    }
+
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<ApiError> handleTooManyRequests(TooManyRequestsException ex, HttpServletRequest request) {
+        long retryAfterSeconds = Math.max(1, (ex.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(apiError(HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests", ex.getMessage(), request));
+    }
+
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<ApiError> handleUnavailable(ServiceUnavailableException ex, HttpServletRequest request) {
+        return buildResponse(HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable", ex.getMessage(), request);
+    }
+
     @ExceptionHandler(JwtAuthenticationException.class)
     public ResponseEntity<ApiError> handleJwt(JwtAuthenticationException ex, HttpServletRequest request) {
         return buildResponse(HttpStatus.UNAUTHORIZED, "Invalid JWT", ex.getMessage(), request);
@@ -58,14 +86,17 @@ public class GlobalExceptionHandler {
     }
 
     private ResponseEntity<ApiError> buildResponse(HttpStatus status, String error, String message, HttpServletRequest request) {
-        ApiError apiError = ApiError.builder()
+        return ResponseEntity.status(status).body(apiError(status, error, message, request));
+    }
+
+    private ApiError apiError(HttpStatus status, String error, String message, HttpServletRequest request) {
+        return ApiError.builder()
                 .timestamp(LocalDateTime.now())
                 .status(status.value())
                 .error(error)
                 .message(message)
                 .path(request.getRequestURI())
                 .build();
-        return ResponseEntity.status(status).body(apiError);
     }
 }
 
@@ -0,0 +1,38 @@
+package bank.testovoe.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Extra bounds that only matter when requests run on virtual threads
+ * ({@code spring.threads.virtual.enabled=true} on Java 21 or later; the condition also checks
+ * the running JVM, so the property alone on Java 17 does not apply them): Tomcat no longer caps
+ * concurrency at its worker pool size, so each downstream resource has to cap itself. BCrypt is
+ * bounded by {@link bank.testovoe.config.security.BoundedPasswordEncoder} in either mode.
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadConfig {
+
+    @Bean
+    public static BeanPostProcessor permitDataSourcePostProcessor(
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int permits,
+            @Value("${datasource.permit-timeout:5s}") Duration timeout) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof PermitDataSource)) {
+                    return new PermitDataSource(dataSource, permits, timeout);
+                }
+                return bean;
+            }
+        };
+    }
+}
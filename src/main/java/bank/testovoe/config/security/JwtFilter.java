@@ -1,9 +1,13 @@
 package bank.testovoe.config.security;
 
+import bank.testovoe.dto.auth.TokenClaims;
+import bank.testovoe.exception.JwtAuthenticationException;
 import bank.testovoe.model.User;
 import bank.testovoe.service.JwtService;
 import bank.testovoe.service.UserService;
 import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -12,6 +16,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -22,6 +27,7 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Optional;
 
 @Slf4j
 @Component
@@ -35,6 +41,18 @@ public class JwtFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final UserService userService;
+    private final UserPrincipalCache userPrincipalCache;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * When enabled, tokens carrying a user id are trusted as-is and the principal is built from
+     * their claims without touching the database. Users changed or deleted on this node are
+     * looked up again until their old tokens expire ({@link UserPrincipalCache#isRevoked}); other
+     * nodes trust the old claims until then, so multi-node deployments should use it only with
+     * short-lived tokens.
+     */
+    @Value("${security.stateless-principal:false}")
+    private boolean statelessPrincipal;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -48,33 +66,34 @@ public class JwtFilter extends OncePerRequestFilter {
             return;
         }
 
+        Timer.Sample sample = Timer.start(meterRegistry);
         try {
             String token = authHeader.substring(BEARER_PREFIX.length());
-            String email = jwtService.extractUsername(token);
+            TokenClaims claims = jwtService.parseToken(token);
+            String email = claims.email();
             if (email != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                User user = userService.findByEmail(email)
+                User user = resolvePrincipal(claims)
                         .orElseThrow(() -> {
                             logger.warn("User not found for email: {}", email);
                             return new UsernameNotFoundException("User not found");
                         });
 
-                if (jwtService.isTokenValid(token, user)) {
-                    UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                            user, null,
-                            List.of(new SimpleGrantedAuthority(ROLE_PREFIX + user.getRole().name()))
-                    );
-                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    SecurityContextHolder.getContext().setAuthentication(authToken);
-                    logger.debug("User {} successfully authenticated", email);
-                } else {
-                    logger.warn("Invalid JWT token for user: {}", email);
-                }
+                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                        user, null,
+                        List.of(new SimpleGrantedAuthority(ROLE_PREFIX + user.getRole().name()))
+                );
+                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                SecurityContextHolder.getContext().setAuthentication(authToken);
+                logger.debug("User {} successfully authenticated", email);
             }
-        } catch (JwtException e) {
+            sample.stop(authTimer("success"));
+        } catch (JwtException | JwtAuthenticationException e) {
+            sample.stop(authTimer("invalid"));
             logger.warn("JWT token processing error: {}", e.getMessage());
             response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
             return;
         } catch (Exception e) {
+            sample.stop(authTimer("error"));
             logger.error("Unexpected error during JWT processing: {}", e.getMessage());
             response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             return;
@@ -83,10 +102,26 @@ public class JwtFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    private Timer authTimer(String outcome) {
+        return meterRegistry.timer("bank.auth.jwt", "outcome", outcome);
+    }
+
+    private Optional<User> resolvePrincipal(TokenClaims claims) {
+        if (statelessPrincipal && claims.userId() != null && !userPrincipalCache.isRevoked(claims.userId())) {
+            return Optional.of(User.builder()
+                    .id(claims.userId())
+                    .email(claims.email())
+                    .role(claims.role())
+                    .build());
+        }
+        return userPrincipalCache.get(claims.email(), userService::findByEmail);
+    }
+
     @Override
     protected boolean shouldNotFilter(HttpServletRequest request) {
         String path = request.getRequestURI();
         return path.startsWith("/api/auth")
+                || path.equals("/actuator/health")
                 || path.startsWith("/swagger-ui")
                 || path.startsWith("/v3/api-docs");
     }
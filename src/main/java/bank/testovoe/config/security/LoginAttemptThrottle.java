@@ -0,0 +1,85 @@
+package bank.testovoe.config.security;
+
+import bank.testovoe.exception.TooManyRequestsException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Limits login and registration attempts per email and per client IP, checked before any
+ * password is hashed so a credential-stuffing burst is turned away without costing BCrypt time.
+ * Each key keeps a sliding-window counter: the current fixed window's count plus the previous
+ * window's count weighted by how much of it still overlaps the sliding window. That is two
+ * numbers per key instead of a timestamp per attempt, and keys idle for two windows expire.
+ */
+@Component
+public class LoginAttemptThrottle {
+
+    private final long windowNanos;
+    private final int maxPerEmail;
+    private final int maxPerIp;
+    private final Cache<String, Window> windows;
+
+    public LoginAttemptThrottle(@Value("${security.login-throttle.window:1m}") Duration window,
+                                @Value("${security.login-throttle.max-per-email:10}") int maxPerEmail,
+                                @Value("${security.login-throttle.max-per-ip:100}") int maxPerIp,
+                                @Value("${security.login-throttle.max-keys:100000}") long maxKeys) {
+        this.windowNanos = window.toNanos();
+        this.maxPerEmail = maxPerEmail;
+        this.maxPerIp = maxPerIp;
+        this.windows = Caffeine.newBuilder()
+                .expireAfterAccess(window.multipliedBy(2))
+                .maximumSize(maxKeys)
+                .build();
+    }
+
+    /**
+     * Counts the attempt against the client IP and then against the email; throws as soon as one
+     * of them is over its limit.
+     */
+    public void acquire(String email, String clientIp) {
+        long now = System.nanoTime();
+        check(windows.get("ip:" + clientIp, key -> new Window(now)).tryAcquire(now, maxPerIp));
+        check(windows.get("email:" + email.toLowerCase(Locale.ROOT), key -> new Window(now)).tryAcquire(now, maxPerEmail));
+    }
+
+    private static void check(long retryNanos) {
+        if (retryNanos > 0) {
+            throw new TooManyRequestsException("Too many attempts, retry later", Duration.ofNanos(retryNanos));
+        }
+    }
+
+    private final class Window {
+        private long start;
+        private int current;
+        private int previous;
+
+        Window(long now) {
+            this.start = now;
+        }
+
+        /**
+         * @return 0 if the attempt was counted, otherwise nanoseconds until the window rolls over
+         */
+        synchronized long tryAcquire(long now, int limit) {
+            long elapsed = now - start;
+            if (elapsed >= windowNanos) {
+                long windows = elapsed / windowNanos;
+                previous = windows == 1 ? current : 0;
+                current = 0;
+                start += windows * windowNanos;
+                elapsed -= windows * windowNanos;
+            }
+            double overlap = 1 - (double) elapsed / windowNanos;
+            if (previous * overlap + current >= limit) {
+                return windowNanos - elapsed;
+            }
+            current++;
+            return 0;
+        }
+    }
+}
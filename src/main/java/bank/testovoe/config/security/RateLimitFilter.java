@@ -0,0 +1,155 @@
+package bank.testovoe.config.security;
+
+import bank.testovoe.dto.ApiError;
+import bank.testovoe.model.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-user request rate limits, applied right after {@link JwtFilter} so the user is known.
+ * Each (user, endpoint class) pair has a token bucket kept as a single {@link AtomicLong}
+ * holding the bucket's "theoretical arrival time" (GCRA): a request is admitted if that time is
+ * no further ahead of now than the burst allowance, and moves it forward by one interval. Admission
+ * is one CAS, no locks, and a bucket costs one boxed long plus its cache entry; buckets idle
+ * longer than {@code rate-limit.idle-expiry} are evicted.
+ */
+@Slf4j
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    enum EndpointClass {
+        READ, WRITE, EXPORT
+    }
+
+    private final boolean enabled;
+    private final Map<EndpointClass, Limit> limits = new EnumMap<>(EndpointClass.class);
+    private final Map<EndpointClass, Counter> rejected = new EnumMap<>(EndpointClass.class);
+    private final Cache<Long, AtomicLong> buckets;
+    private final ObjectMapper objectMapper;
+
+    public RateLimitFilter(@Value("${rate-limit.enabled:true}") boolean enabled,
+                           @Value("${rate-limit.read.capacity:50}") int readCapacity,
+                           @Value("${rate-limit.read.refill-per-second:20}") double readRefill,
+                           @Value("${rate-limit.write.capacity:20}") int writeCapacity,
+                           @Value("${rate-limit.write.refill-per-second:5}") double writeRefill,
+                           @Value("${rate-limit.export.capacity:2}") int exportCapacity,
+                           @Value("${rate-limit.export.refill-per-second:0.05}") double exportRefill,
+                           @Value("${rate-limit.idle-expiry:10m}") Duration idleExpiry,
+                           @Value("${rate-limit.max-buckets:1000000}") long maxBuckets,
+                           ObjectMapper objectMapper,
+                           MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.limits.put(EndpointClass.READ, new Limit(readCapacity, readRefill));
+        this.limits.put(EndpointClass.WRITE, new Limit(writeCapacity, writeRefill));
+        this.limits.put(EndpointClass.EXPORT, new Limit(exportCapacity, exportRefill));
+        for (EndpointClass endpointClass : EndpointClass.values()) {
+            rejected.put(endpointClass, meterRegistry.counter("bank.rate_limit.rejected",
+                    "class", endpointClass.name().toLowerCase()));
+        }
+        this.buckets = Caffeine.newBuilder()
+                .expireAfterAccess(idleExpiry)
+                .maximumSize(maxBuckets)
+                .build();
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (!enabled || authentication == null || !(authentication.getPrincipal() instanceof User user)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        EndpointClass endpointClass = classify(request);
+        long retryAfterNanos = tryAcquire(user.getId(), endpointClass);
+        if (retryAfterNanos > 0) {
+            rejected.get(endpointClass).increment();
+            log.debug("Rate limit hit by user {} on {} {}", user.getId(), endpointClass, request.getRequestURI());
+            reject(request, response, retryAfterNanos);
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * @return 0 if the request is admitted, otherwise nanoseconds until it would be
+     */
+    long tryAcquire(long userId, EndpointClass endpointClass) {
+        Limit limit = limits.get(endpointClass);
+        AtomicLong bucket = buckets.get(userId * EndpointClass.values().length + endpointClass.ordinal(),
+                key -> new AtomicLong(Long.MIN_VALUE));
+        long now = System.nanoTime();
+        while (true) {
+            long arrival = bucket.get();
+            long start = Math.max(arrival, now);
+            long ahead = start - now;
+            if (ahead > limit.burstNanos()) {
+                return ahead - limit.burstNanos();
+            }
+            if (bucket.compareAndSet(arrival, start + limit.intervalNanos())) {
+                return 0;
+            }
+        }
+    }
+
+    private static EndpointClass classify(HttpServletRequest request) {
+        if (request.getRequestURI().startsWith("/api/admin/cards/export")) {
+            return EndpointClass.EXPORT;
+        }
+        String method = request.getMethod();
+        return "GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method)
+                ? EndpointClass.READ
+                : EndpointClass.WRITE;
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response, long retryAfterNanos) throws IOException {
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(retryAfterNanos + 999_999_999));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), ApiError.builder()
+                .timestamp(LocalDateTime.now())
+                .status(HttpStatus.TOO_MANY_REQUESTS.value())
+                .error("Too Many Requests")
+                .message("Rate limit exceeded, retry later")
+                .path(request.getRequestURI())
+                .build());
+    }
+
+    /**
+     * A bucket of {@code capacity} tokens refilled at {@code refillPerSecond}: requests are spaced
+     * by {@code intervalNanos} on average and may run {@code capacity - 1} intervals ahead.
+     */
+    private record Limit(long intervalNanos, long burstNanos) {
+        Limit(int capacity, double refillPerSecond) {
+            this((long) (1e9 / refillPerSecond), (long) ((capacity - 1) * (1e9 / refillPerSecond)));
+        }
+    }
+}
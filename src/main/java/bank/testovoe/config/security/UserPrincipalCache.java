@@ -0,0 +1,123 @@
+package bank.testovoe.config.security;
+
+import bank.testovoe.model.User;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Short-lived cache of authenticated principals keyed by email, so {@link JwtFilter} does not
+ * query {@code users} on every request. Registered as a JPA entity listener on {@link User}:
+ * an updated (e.g. role change) or deleted user is evicted on this node once the change commits,
+ * under both its old and its new email, other nodes pick the change up once the TTL runs out.
+ * Bulk JPQL updates of users bypass the entity listener and must publish {@link UserChanged}
+ * themselves.
+ * <p>
+ * Changed users are also remembered for {@code security.principal-cache.revocation-ttl}, the
+ * token lifetime, so {@link JwtFilter} stops trusting the claims of their outstanding tokens.
+ */
+@Slf4j
+@Component
+public class UserPrincipalCache {
+
+    private final Cache<String, User> principals;
+    private final Cache<Long, Boolean> revoked;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public UserPrincipalCache(@Value("${security.principal-cache.ttl:30s}") Duration ttl,
+                              @Value("${security.principal-cache.max-size:100000}") long maxSize,
+                              @Value("${security.principal-cache.revocation-ttl:24h}") Duration revocationTtl,
+                              ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+        this.principals = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .build();
+        this.revoked = Caffeine.newBuilder()
+                .expireAfterWrite(revocationTtl)
+                .maximumSize(maxSize)
+                .build();
+    }
+
+    public Optional<User> get(String email, Function<String, Optional<User>> loader) {
+        User cached = principals.getIfPresent(email);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<User> loaded = loader.apply(email).map(UserPrincipalCache::toPrincipal);
+        loaded.ifPresent(user -> principals.put(email, user));
+        return loaded;
+    }
+
+    public void evict(String email) {
+        principals.invalidate(email);
+    }
+
+    /**
+     * Whether the user's role or email changed, or the user was removed, within the lifetime of a
+     * token issued before, so the token's claims may be out of date.
+     */
+    public boolean isRevoked(Long userId) {
+        return revoked.getIfPresent(userId) != null;
+    }
+
+    @PostLoad
+    void onUserLoaded(User user) {
+        user.setLoadedEmail(user.getEmail());
+    }
+
+    /**
+     * Runs at flush, before the change is committed; evicting now would let a concurrent request
+     * cache the old row again, so eviction waits for {@link #onUserChanged(UserChanged)}.
+     */
+    @PostUpdate
+    @PostRemove
+    void onUserWritten(User user) {
+        eventPublisher.publishEvent(new UserChanged(user.getId(), user.getEmail(), user.getLoadedEmail()));
+        user.setLoadedEmail(user.getEmail());
+    }
+
+    /**
+     * Runs after commit, so a rolled back write keeps the cache; without a transaction it runs
+     * immediately.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    void onUserChanged(UserChanged event) {
+        log.debug("Evicting cached principal for {}", event.email());
+        evict(event.email());
+        if (event.previousEmail() != null && !event.previousEmail().equals(event.email())) {
+            evict(event.previousEmail());
+        }
+        revoked.put(event.userId(), Boolean.TRUE);
+    }
+
+    /**
+     * Builds a detached principal carrying only what controllers and services read from it.
+     */
+    public static User toPrincipal(User user) {
+        return User.builder()
+                .id(user.getId())
+                .email(user.getEmail())
+                .role(user.getRole())
+                .build();
+    }
+
+    /**
+     * Published by every write that changes a user's role or email or removes the user.
+     *
+     * @param previousEmail the email before the write, or {@code null} if it is not known
+     */
+    public record UserChanged(Long userId, String email, String previousEmail) {
+    }
+}
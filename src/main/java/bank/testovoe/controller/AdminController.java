@@ -1,12 +1,23 @@
 package bank.testovoe.controller;
 
+import bank.testovoe.dto.KeysetPage;
+import bank.testovoe.dto.card.CardBalanceDto;
 import bank.testovoe.dto.card.CardDto;
+import bank.testovoe.dto.card.CardIssuanceResult;
+import bank.testovoe.dto.card.CardSummary;
 import bank.testovoe.dto.card.CreateCardRequest;
+import bank.testovoe.exception.BadRequestException;
 import bank.testovoe.mapper.CardMapper;
 import bank.testovoe.model.Card;
 import bank.testovoe.model.User;
+import bank.testovoe.repository.CardExportRepository;
+import bank.testovoe.service.BalanceStripeService;
+import bank.testovoe.service.CardIssuanceService;
 import bank.testovoe.service.CardService;
+import bank.testovoe.service.LedgerService;
 import bank.testovoe.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -16,18 +27,31 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Pattern;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
@@ -38,19 +62,60 @@ import java.util.List;
 @SecurityRequirement(name = "JWT")
 public class AdminController {
 
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final String NDJSON = "application/x-ndjson";
+
     private final CardService cardService;
     private final CardMapper cardMapper;
     private final UserService userService;
+    private final CardExportRepository cardExportRepository;
+    private final ObjectMapper objectMapper;
+    private final LedgerService ledgerService;
+    private final BalanceStripeService balanceStripeService;
+    private final CardIssuanceService cardIssuanceService;
 
     @GetMapping
-    @Operation(summary = "Получить все карты в системе")
-    public ResponseEntity<List<CardDto>> getAllCards(
-            @AuthenticationPrincipal User user
+    @Operation(summary = "Получить все карты в системе", description = "Постраничный список карт, упорядоченный по ID")
+    public ResponseEntity<KeysetPage<CardDto>> getAllCards(
+            @RequestParam(required = false)
+            @Parameter(description = "Курсор следующей страницы (nextCursor из предыдущего ответа)")
+            String cursor,
+            @RequestParam(defaultValue = "50")
+            @Parameter(description = "Размер страницы (не более 500)")
+            int size
     ) {
-        var cards = cardService.getCardsForUser(user).stream()
+        int limit = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        List<CardSummary> cards = cardService.getAllCards(parseCursor(cursor), limit + 1);
+        boolean hasNext = cards.size() > limit;
+        List<CardDto> content = cards.stream()
+                .limit(limit)
                 .map(cardMapper::toDto)
                 .toList();
-        return ResponseEntity.ok(cards);
+        String nextCursor = hasNext ? String.valueOf(content.get(content.size() - 1).id()) : null;
+        return ResponseEntity.ok(KeysetPage.of(content, nextCursor));
+    }
+
+    @GetMapping(value = "/export", produces = NDJSON)
+    @Operation(summary = "Выгрузить все карты", description = "Потоковая выгрузка всех карт в формате NDJSON. "
+            + "Выгрузка ограничена по времени spring.mvc.async.request-timeout")
+    public ResponseEntity<StreamingResponseBody> exportCards() {
+        StreamingResponseBody body = out -> {
+            try (SequenceWriter rows = objectMapper.writerFor(CardDto.class)
+                    .withRootValueSeparator("\n")
+                    .writeValues(out)) {
+                cardExportRepository.streamAll(card -> {
+                    try {
+                        rows.write(cardMapper.toDto(card));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=cards.ndjson")
+                .body(body);
     }
 
     @PostMapping
@@ -64,6 +129,42 @@ public class AdminController {
         return ResponseEntity.status(HttpStatus.CREATED).body(cardMapper.toDto(card));
     }
 
+    @PostMapping(value = "/bulk", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = NDJSON)
+    @Operation(
+            summary = "Массовый выпуск карт из CSV",
+            description = "Файл со строками userId,cardNumber,expiryDate (заголовок необязателен) читается потоково. "
+                    + "Ответ — NDJSON с результатом по каждой строке: cardId выпущенной карты или error. "
+                    + "Обработка ограничена по времени spring.mvc.async.request-timeout"
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Отчёт по строкам файла"),
+            @ApiResponse(responseCode = "400", description = "Файл не передан")
+    })
+    public ResponseEntity<StreamingResponseBody> issueCards(
+            @Parameter(description = "CSV-файл с картами", required = true)
+            @RequestParam("file") MultipartFile file
+    ) throws IOException {
+        // Opened here, while the multipart request is certainly still alive
+        InputStream csv = file.getInputStream();
+        StreamingResponseBody body = out -> {
+            try (Reader reader = new InputStreamReader(csv, StandardCharsets.UTF_8);
+                 SequenceWriter rows = objectMapper.writerFor(CardIssuanceResult.class)
+                         .withRootValueSeparator("\n")
+                         .writeValues(out)) {
+                cardIssuanceService.issue(reader, result -> {
+                    try {
+                        rows.write(result);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(body);
+    }
+
     @Operation(
             summary = "Активировать карту по номеру",
             description = "Администратор активирует карту по её номеру (16 цифр)",
@@ -118,5 +219,65 @@ public class AdminController {
         cardService.blockAnyCard(cardNumber);
         return ResponseEntity.ok().build();
     }
-}
 
+    @GetMapping("/{id}/balance")
+    @Operation(summary = "Баланс карты на момент времени",
+            description = "Восстанавливает баланс карты по журналу операций: последний снимок баланса плюс проводки после него")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Баланс на указанный момент"),
+            @ApiResponse(responseCode = "404", description = "Карта не найдена")
+    })
+    public ResponseEntity<CardBalanceDto> getBalanceAsOf(
+            @PathVariable Long id,
+            @RequestParam(required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            @Parameter(description = "Момент времени (по умолчанию — текущий)", example = "2025-01-31T23:59:59")
+            LocalDateTime asOf
+    ) {
+        LocalDateTime at = asOf != null ? asOf : LocalDateTime.now();
+        return ResponseEntity.ok(new CardBalanceDto(id, at, ledgerService.balanceAsOf(id, at)));
+    }
+
+    @PostMapping("/{id}/stripes")
+    @Operation(summary = "Разделить баланс карты на полосы",
+            description = "Для карт с большим потоком переводов: баланс хранится в нескольких строках, "
+                    + "и параллельные переводы не ждут друг друга на одной блокировке")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Баланс разделён"),
+            @ApiResponse(responseCode = "400", description = "Недопустимое число полос"),
+            @ApiResponse(responseCode = "403", description = "Баланс карты уже разделён"),
+            @ApiResponse(responseCode = "404", description = "Карта не найдена")
+    })
+    public ResponseEntity<Void> stripeBalance(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "8")
+            @Parameter(description = "Число полос (от 2 до 64)")
+            int stripes
+    ) {
+        balanceStripeService.stripe(id, stripes);
+        return ResponseEntity.ok().build();
+    }
+
+    @DeleteMapping("/{id}/stripes")
+    @Operation(summary = "Собрать баланс карты обратно", description = "Переносит сумму полос в баланс карты и удаляет полосы")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Баланс собран"),
+            @ApiResponse(responseCode = "403", description = "Баланс карты не разделён"),
+            @ApiResponse(responseCode = "404", description = "Карта не найдена")
+    })
+    public ResponseEntity<Void> unstripeBalance(@PathVariable Long id) {
+        balanceStripeService.unstripe(id);
+        return ResponseEntity.ok().build();
+    }
+
+    private static Long parseCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(cursor);
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+}
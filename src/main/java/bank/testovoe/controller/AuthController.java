@@ -8,6 +8,7 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -29,12 +30,14 @@ public class AuthController {
     @Operation(summary = "Регистрация пользователя", description = "Создает нового пользователя с email и паролем")
     @ApiResponses({
         @ApiResponse(responseCode = "201", description = "Пользователь успешно зарегистрирован"),
-        @ApiResponse(responseCode = "400", description = "Ошибка валидации или email уже используется")
+        @ApiResponse(responseCode = "400", description = "Ошибка валидации или email уже используется"),
+        @ApiResponse(responseCode = "429", description = "Слишком много попыток, повторите после Retry-After")
     })
     public ResponseEntity<?> register(
-            @Valid @RequestBody RegisterRequest request
+            @Valid @RequestBody RegisterRequest request,
+            HttpServletRequest httpRequest
     ) {
-        authService.register(request.email(), request.password());
+        authService.register(request.email(), request.password(), httpRequest.getRemoteAddr());
         return ResponseEntity.status(HttpStatus.CREATED).build();
     }
 
@@ -42,12 +45,14 @@ public class AuthController {
     @Operation(summary = "Авторизация пользователя", description = "Возвращает JWT токен при успешной аутентификации")
     @ApiResponses({
         @ApiResponse(responseCode = "200", description = "Успешный вход, возвращён токен"),
-        @ApiResponse(responseCode = "401", description = "Неверные email или пароль")
+        @ApiResponse(responseCode = "403", description = "Неверные email или пароль"),
+        @ApiResponse(responseCode = "429", description = "Слишком много попыток, повторите после Retry-After")
     })
     public ResponseEntity<LoginResponse> login(
-            @Valid @RequestBody LoginRequest request
+            @Valid @RequestBody LoginRequest request,
+            HttpServletRequest httpRequest
     ) {
-        String token = authService.login(request.email(), request.password());
+        String token = authService.login(request.email(), request.password(), httpRequest.getRemoteAddr());
         return ResponseEntity.ok(new LoginResponse(token));
     }
 }
@@ -1,10 +1,14 @@
 package bank.testovoe.controller;
 
+import bank.testovoe.config.CardCache;
+import bank.testovoe.dto.KeysetPage;
 import bank.testovoe.dto.card.CardDto;
 import bank.testovoe.dto.card.CreateCardRequest;
+import bank.testovoe.dto.card.DepositStatusDto;
 import bank.testovoe.mapper.CardMapper;
 import bank.testovoe.model.Card;
 import bank.testovoe.model.CardStatus;
+import bank.testovoe.model.DepositIntake;
 import bank.testovoe.model.User;
 import bank.testovoe.service.CardService;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -38,6 +42,7 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 
 import java.math.BigDecimal;
+import java.net.URI;
 import java.util.List;
 
 @Slf4j
@@ -49,17 +54,20 @@ import java.util.List;
 @PreAuthorize("hasRole('USER')")
 public class CardController {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final CardService cardService;
     private final CardMapper cardMapper;
+    private final CardCache cardCache;
 
     @GetMapping
     @Operation(summary = "Получить список карт", description = "Возвращает все карты, принадлежащие текущему пользователю")
     public ResponseEntity<List<CardDto>> getCards(
             @AuthenticationPrincipal User user
     ) {
-        var cards = cardService.getCardsForUser(user).stream()
+        List<CardDto> cards = cardCache.getCards(user.getId(), () -> cardService.getCardsForUser(user).stream()
                 .map(cardMapper::toDto)
-                .toList();
+                .toList());
         return ResponseEntity.ok(cards);
     }
 
@@ -124,6 +132,50 @@ public class CardController {
         return ResponseEntity.ok().build();
     }
 
+    @PostMapping("/deposits")
+    @Operation(
+            summary = "Пополнить баланс карты асинхронно",
+            description = "Принимает пополнение в очередь и сразу отвечает 202. Пополнения одной карты "
+                    + "применяются пачками в течение долей секунды; статус — по ссылке из заголовка Location"
+    )
+    @ApiResponses({
+            @ApiResponse(responseCode = "202", description = "Пополнение принято"),
+            @ApiResponse(responseCode = "403", description = "Карта заблокирована или не принадлежит пользователю"),
+            @ApiResponse(responseCode = "404", description = "Карта не найдена"),
+            @ApiResponse(responseCode = "400", description = "Некорректные параметры")
+    })
+    public ResponseEntity<DepositStatusDto> submitDeposit(
+            @AuthenticationPrincipal User user,
+
+            @Parameter(description = "Номер карты (16 цифр)", required = true, example = "6171053773368137")
+            @RequestParam
+            @Pattern(regexp = "\\d{16}", message = "Номер карты должен состоять из 16 цифр")
+            String cardNumber,
+
+            @Parameter(description = "Сумма пополнения", required = true, example = "100.00")
+            @RequestParam
+            @DecimalMin(value = "0.01", inclusive = true, message = "Сумма пополнения должна быть больше 0")
+            BigDecimal amount
+    ) {
+        DepositIntake deposit = cardService.submitDeposit(cardNumber, amount, user);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/cards/deposits/" + deposit.getId()))
+                .body(DepositStatusDto.of(deposit));
+    }
+
+    @GetMapping("/deposits/{id}")
+    @Operation(summary = "Статус асинхронного пополнения", description = "PENDING, APPLIED или REJECTED с причиной")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Статус пополнения"),
+            @ApiResponse(responseCode = "404", description = "Пополнение не найдено")
+    })
+    public ResponseEntity<DepositStatusDto> getDeposit(
+            @AuthenticationPrincipal User user,
+            @PathVariable Long id
+    ) {
+        return ResponseEntity.ok(DepositStatusDto.of(cardService.getDeposit(id, user)));
+    }
+
     @GetMapping("/search")
     @Operation(summary = "Поиск карт пользователя с фильтрами и пагинацией")
     public ResponseEntity<Page<CardDto>> searchCards(
@@ -133,11 +185,34 @@ public class CardController {
             @RequestParam(required = false) BigDecimal maxBalance,
             @PageableDefault(size = 10, sort = "createdAt", direction = Sort.Direction.DESC) Pageable pageable
     ) {
-        Page<CardDto> page = cardService.searchCards(user, status, minBalance, maxBalance, pageable)
-                .map(cardMapper::toDto);
+        Page<CardDto> page = cardCache.search(user.getId(), status, minBalance, maxBalance, pageable,
+                () -> cardService.searchCards(user, status, minBalance, maxBalance, pageable).map(cardMapper::toDto));
 
         return ResponseEntity.ok(page);
     }
 
+    @GetMapping("/search/scroll")
+    @Operation(summary = "Поиск карт без подсчёта общего количества",
+            description = "Бесконечная прокрутка: карты от новых к старым, следующая страница запрашивается по nextCursor")
+    public ResponseEntity<KeysetPage<CardDto>> scrollCards(
+            @AuthenticationPrincipal User user,
+            @RequestParam(required = false) CardStatus status,
+            @RequestParam(required = false) BigDecimal minBalance,
+            @RequestParam(required = false) BigDecimal maxBalance,
+            @RequestParam(required = false)
+            @Parameter(description = "Курсор следующей страницы (nextCursor из предыдущего ответа)")
+            String cursor,
+            @RequestParam(defaultValue = "10")
+            @Parameter(description = "Размер страницы (не более 100)")
+            int size
+    ) {
+        int limit = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        KeysetPage<Card> page = cardService.scrollCards(user, status, minBalance, maxBalance, cursor, limit);
+        List<CardDto> content = page.content().stream()
+                .map(cardMapper::toDto)
+                .toList();
+        return ResponseEntity.ok(KeysetPage.of(content, page.nextCursor()));
+    }
+
 }
 
@@ -1,25 +1,39 @@
 package bank.testovoe.controller;
 
+import bank.testovoe.dto.KeysetPage;
+import bank.testovoe.dto.transfer.BulkTransferRequest;
+import bank.testovoe.dto.transfer.BulkTransferResponse;
+import bank.testovoe.dto.transfer.BulkTransferResult;
+import bank.testovoe.dto.transfer.TransferHistoryRow;
 import bank.testovoe.dto.transfer.TransferRequest;
 import bank.testovoe.dto.transfer.TransferResponse;
 import bank.testovoe.mapper.TransferMapper;
 import bank.testovoe.model.User;
+import bank.testovoe.service.IdempotentTransferService;
 import bank.testovoe.service.TransferService;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/transfer")
 @RequiredArgsConstructor
@@ -27,22 +41,99 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 @SecurityRequirement(name = "JWT")
 public class TransferController {
 
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
     private final TransferService transferService;
+    private final IdempotentTransferService idempotentTransferService;
     private final TransferMapper transferMapper;
 
+    @GetMapping
+    @Operation(summary = "История переводов",
+            description = "Переводы пользователя от новых к старым, по всем картам или по одной карте")
+    @ApiResponses({
+        @ApiResponse(responseCode = "200", description = "Страница истории"),
+        @ApiResponse(responseCode = "400", description = "Неверный курсор"),
+        @ApiResponse(responseCode = "404", description = "Карта не найдена")
+    })
+    public ResponseEntity<KeysetPage<TransferResponse>> getHistory(
+            @AuthenticationPrincipal User user,
+            @RequestParam(required = false)
+            @Parameter(description = "ID карты; без него возвращаются переводы по всем картам")
+            Long cardId,
+            @RequestParam(required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            @Parameter(description = "Начало периода (включительно)")
+            LocalDateTime from,
+            @RequestParam(required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            @Parameter(description = "Конец периода (включительно)")
+            LocalDateTime to,
+            @RequestParam(required = false)
+            @Parameter(description = "Курсор следующей страницы (nextCursor из предыдущего ответа)")
+            String cursor,
+            @RequestParam(defaultValue = "20")
+            @Parameter(description = "Размер страницы (не более 100)")
+            int size
+    ) {
+        int limit = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        KeysetPage<TransferHistoryRow> page = transferService.getHistory(user, cardId, from, to, cursor, limit);
+        List<TransferResponse> content = page.content().stream()
+                .map(transferMapper::toDto)
+                .toList();
+        return ResponseEntity.ok(KeysetPage.of(content, page.nextCursor()));
+    }
+
     @PostMapping
     @Operation(summary = "Совершить перевод", description = "Перевод средств между своими активными картами")
     @ApiResponses({
         @ApiResponse(responseCode = "201", description = "Перевод выполнен успешно"),
         @ApiResponse(responseCode = "400", description = "Недостаточно средств или неверные данные"),
-        @ApiResponse(responseCode = "403", description = "Одна из карт заблокирована")
+        @ApiResponse(responseCode = "403", description = "Одна из карт заблокирована"),
+        @ApiResponse(responseCode = "409", description = "Ключ идемпотентности уже использован для другого запроса")
     })
     public ResponseEntity<TransferResponse> transfer(
             @AuthenticationPrincipal User user,
+            @RequestHeader(name = IDEMPOTENCY_KEY, required = false)
+            @Parameter(description = "Ключ идемпотентности: повторный запрос с тем же ключом возвращает исходный перевод")
+            String idempotencyKey,
             @Valid @RequestBody TransferRequest request
     ) {
+        if (idempotencyKey != null) {
+            TransferResponse response = idempotentTransferService.transfer(user, idempotencyKey, request);
+            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        }
         var transfer = transferService.transfer(user, request.fromCardNumber(), request.toCardNumber(), request.amount());
         return ResponseEntity.status(HttpStatus.CREATED).body(transferMapper.toDto(transfer));
     }
-}
 
+    @PostMapping("/bulk")
+    @Operation(summary = "Пакетный перевод",
+            description = "Выполняет до 1000 переводов между своими картами в одной транзакции. "
+                    + "Без strict отклонённые переводы возвращаются в результатах, остальные выполняются; "
+                    + "со strict первый отклонённый перевод отменяет весь пакет")
+    @ApiResponses({
+        @ApiResponse(responseCode = "200", description = "Результаты по каждому переводу"),
+        @ApiResponse(responseCode = "400", description = "Неверные данные или отклонённый перевод в режиме strict")
+    })
+    public ResponseEntity<BulkTransferResponse> transferAll(
+            @AuthenticationPrincipal User user,
+            @Valid @RequestBody BulkTransferRequest request
+    ) {
+        List<BulkTransferResult> results = transferService.transferAll(user, request.transfers(), request.strict());
+        List<BulkTransferResponse.Item> items = results.stream()
+                .map(result -> BulkTransferResponse.Item.builder()
+                        .index(result.index())
+                        .applied(result.isApplied())
+                        .transfer(result.isApplied() ? transferMapper.toDto(result.transfer()) : null)
+                        .error(result.error())
+                        .build())
+                .toList();
+        int applied = (int) results.stream().filter(BulkTransferResult::isApplied).count();
+        return ResponseEntity.ok(BulkTransferResponse.builder()
+                .applied(applied)
+                .rejected(results.size() - applied)
+                .results(items)
+                .build());
+    }
+}
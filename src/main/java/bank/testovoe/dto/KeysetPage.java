@@ -0,0 +1,17 @@
+package bank.testovoe.dto;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing. {@code nextCursor} is opaque to clients and is passed
+ * back as {@code cursor} to fetch the following page; it is {@code null} on the last page.
+ */
+public record KeysetPage<T>(
+        List<T> content,
+        String nextCursor,
+        boolean hasNext
+) {
+    public static <T> KeysetPage<T> of(List<T> content, String nextCursor) {
+        return new KeysetPage<>(content, nextCursor, nextCursor != null);
+    }
+}
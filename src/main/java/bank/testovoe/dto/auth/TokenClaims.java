@@ -0,0 +1,13 @@
+package bank.testovoe.dto.auth;
+
+import bank.testovoe.model.Role;
+
+import java.time.Instant;
+
+public record TokenClaims(
+        Long userId,
+        String email,
+        Role role,
+        Instant expiresAt
+) {
+}
@@ -0,0 +1,11 @@
+package bank.testovoe.dto.card;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public record CardBalanceDto(
+        Long cardId,
+        LocalDateTime asOf,
+        BigDecimal balance
+) {
+}
@@ -0,0 +1,21 @@
+package bank.testovoe.dto.card;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One line of the bulk issuance report: the card created for a CSV line, or why it was not.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record CardIssuanceResult(
+        long line,
+        Long cardId,
+        String error
+) {
+    public static CardIssuanceResult created(long line, long cardId) {
+        return new CardIssuanceResult(line, cardId, null);
+    }
+
+    public static CardIssuanceResult failed(long line, String error) {
+        return new CardIssuanceResult(line, null, error);
+    }
+}
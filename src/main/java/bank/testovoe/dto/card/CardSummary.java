@@ -0,0 +1,20 @@
+package bank.testovoe.dto.card;
+
+import bank.testovoe.model.CardStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Read-only projection of the card columns {@link CardDto} is built from. Listing queries select
+ * it directly, so neither the card entities nor their owners are loaded.
+ */
+public record CardSummary(
+        Long id,
+        String last4,
+        String encryptedCardNumber,
+        LocalDate expiryDate,
+        CardStatus status,
+        BigDecimal balance
+) {
+}
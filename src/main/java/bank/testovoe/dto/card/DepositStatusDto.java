@@ -0,0 +1,21 @@
+package bank.testovoe.dto.card;
+
+import bank.testovoe.model.DepositIntake;
+import bank.testovoe.model.DepositStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public record DepositStatusDto(
+        Long id,
+        DepositStatus status,
+        BigDecimal amount,
+        LocalDateTime createdAt,
+        LocalDateTime processedAt,
+        String failureReason
+) {
+    public static DepositStatusDto of(DepositIntake deposit) {
+        return new DepositStatusDto(deposit.getId(), deposit.getStatus(), deposit.getAmount(),
+                deposit.getCreatedAt(), deposit.getProcessedAt(), deposit.getFailureReason());
+    }
+}
@@ -0,0 +1,16 @@
+package bank.testovoe.dto.transfer;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record BulkTransferRequest(
+        @NotEmpty(message = "At least one transfer is required")
+        @Size(max = 1000, message = "At most 1000 transfers per request")
+        List<@Valid TransferRequest> transfers,
+
+        boolean strict
+) {
+}
@@ -0,0 +1,21 @@
+package bank.testovoe.dto.transfer;
+
+import lombok.Builder;
+
+import java.util.List;
+
+@Builder
+public record BulkTransferResponse(
+        int applied,
+        int rejected,
+        List<Item> results
+) {
+    @Builder
+    public record Item(
+            int index,
+            boolean applied,
+            TransferResponse transfer,
+            String error
+    ) {
+    }
+}
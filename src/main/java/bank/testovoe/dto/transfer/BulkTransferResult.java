@@ -0,0 +1,25 @@
+package bank.testovoe.dto.transfer;
+
+import bank.testovoe.model.Transfer;
+
+/**
+ * Outcome of one item of a bulk transfer: either the created transfer or the reason it was
+ * rejected. {@code index} is the item's position in the request.
+ */
+public record BulkTransferResult(
+        int index,
+        Transfer transfer,
+        String error
+) {
+    public static BulkTransferResult applied(int index, Transfer transfer) {
+        return new BulkTransferResult(index, transfer, null);
+    }
+
+    public static BulkTransferResult rejected(int index, String error) {
+        return new BulkTransferResult(index, null, error);
+    }
+
+    public boolean isApplied() {
+        return transfer != null;
+    }
+}
@@ -0,0 +1,20 @@
+package bank.testovoe.dto.transfer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Read-only projection of a transfer for history listings. Carries only the card columns needed
+ * to mask the numbers, so no {@code Card} entity is hydrated. The encrypted numbers are only
+ * decrypted for cards whose {@code last4} has not been backfilled yet.
+ */
+public record TransferHistoryRow(
+        Long id,
+        BigDecimal amount,
+        LocalDateTime timestamp,
+        String fromLast4,
+        String fromEncryptedCardNumber,
+        String toLast4,
+        String toEncryptedCardNumber
+) {
+}
@@ -0,0 +1,7 @@
+package bank.testovoe.exception;
+
+public class BadRequestException extends ApiException {
+    public BadRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package bank.testovoe.exception;
+
+public class ConflictException extends ApiException {
+    public ConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package bank.testovoe.exception;
+
+public class InactiveCardException extends ForbiddenOperationException {
+    public InactiveCardException(String message) {
+        super(message);
+    }
+}
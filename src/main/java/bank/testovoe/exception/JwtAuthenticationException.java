@@ -1,8 +1,11 @@
 package bank.testovoe.exception;
 
 public class JwtAuthenticationException extends RuntimeException {
+    public JwtAuthenticationException(String message) {
+        super(message);
+    }
+
     public JwtAuthenticationException(String message, Throwable cause) {
         super(message, cause);
     }
 }
-
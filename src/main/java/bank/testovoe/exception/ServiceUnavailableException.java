@@ -0,0 +1,7 @@
+package bank.testovoe.exception;
+
+public class ServiceUnavailableException extends ApiException {
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,138 @@
+package bank.testovoe.job;
+
+import bank.testovoe.model.Card;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Periodically writes a balance snapshot for every card that has ledger entries since the last
+ * run, so point-in-time balances never sum more than one interval of entries. Snapshots are taken
+ * {@code ledger.snapshot.lag} in the past: an entry is stamped before its transaction commits, and
+ * the lag keeps a snapshot from being cut while such entries are still invisible to it.
+ * <p>
+ * The lag is not relied on alone. Each snapshot is also derived from the card's balance, which
+ * changes in the same transaction as its entries: the card balance minus the committed entries
+ * after the cutoff, read in one statement. An entry that committed after an earlier snapshot was
+ * cut, though stamped before it, is therefore folded into the card's next snapshot, and the
+ * difference to the ledger-only sum is logged as an error and counted in
+ * {@code bank.ledger.snapshot.mismatches}. Balances as of times before that next snapshot still
+ * miss the entry.
+ */
+@Slf4j
+@Component
+public class BalanceSnapshotJob {
+
+    private static final int BATCH_SIZE = 500;
+    private static final LocalDateTime LEDGER_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final Duration lag;
+    private final Counter mismatchCounter;
+
+    public BalanceSnapshotJob(NamedParameterJdbcTemplate jdbcTemplate,
+                              @Value("${ledger.snapshot.lag:1m}") Duration lag,
+                              MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.lag = lag;
+        this.mismatchCounter = meterRegistry.counter("bank.ledger.snapshot.mismatches");
+    }
+
+    @Scheduled(fixedDelayString = "${ledger.snapshot.interval:5m}",
+            initialDelayString = "${ledger.snapshot.interval:5m}")
+    public void run() {
+        try {
+            // Truncated to the column precision, so the stored as_of is exactly the cutoff entries were cut at
+            snapshot(LocalDateTime.now().minus(lag).truncatedTo(ChronoUnit.MICROS));
+        } catch (RuntimeException e) {
+            log.error("Balance snapshot failed", e);
+        }
+    }
+
+    /**
+     * Snapshots, as of {@code cutoff}, every card with entries after the newest existing snapshot.
+     * Per chunk, one query reads each card's latest snapshot plus its entries up to the cutoff
+     * next to its balance minus its entries after the cutoff, and one batch inserts the snapshots.
+     *
+     * @return the number of snapshots written
+     */
+    public int snapshot(LocalDateTime cutoff) {
+        LocalDateTime watermark = jdbcTemplate.getJdbcTemplate()
+                .queryForObject("select max(as_of) from balance_snapshot", LocalDateTime.class);
+        LocalDateTime since = watermark != null ? watermark : LEDGER_START;
+        if (!since.isBefore(cutoff)) {
+            return 0;
+        }
+
+        List<Long> cardIds = jdbcTemplate.queryForList("""
+                        select distinct card_id from ledger_entry
+                        where created_at > :since and created_at <= :cutoff
+                        """,
+                new MapSqlParameterSource("since", since).addValue("cutoff", cutoff),
+                Long.class);
+
+        int written = 0;
+        for (int from = 0; from < cardIds.size(); from += BATCH_SIZE) {
+            List<Long> chunk = cardIds.subList(from, Math.min(from + BATCH_SIZE, cardIds.size()));
+            written += snapshotChunk(chunk, cutoff);
+        }
+        log.info("Balance snapshot as of {}: {} cards", cutoff, written);
+        return written;
+    }
+
+    private int snapshotChunk(List<Long> cardIds, LocalDateTime cutoff) {
+        // The card balance is null for deleted cards, whose entries outlive them
+        List<CardBalance> balances = jdbcTemplate.query("""
+                        select x.card_id,
+                               coalesce(s.balance, 0) + (select coalesce(sum(e.amount), 0) from ledger_entry e
+                                   where e.card_id = x.card_id and e.created_at <= :cutoff
+                                     and (s.as_of is null or e.created_at > s.as_of)) as ledger_balance,
+                               (select %s from card where id = x.card_id)
+                                 - (select coalesce(sum(e.amount), 0) from ledger_entry e
+                                   where e.card_id = x.card_id and e.created_at > :cutoff) as card_balance
+                        from (select distinct card_id from ledger_entry where card_id in (:cardIds)) x
+                        left join balance_snapshot s on s.card_id = x.card_id and s.as_of =
+                            (select max(l.as_of) from balance_snapshot l where l.card_id = x.card_id)
+                        """.formatted(Card.EFFECTIVE_BALANCE),
+                new MapSqlParameterSource("cutoff", cutoff).addValue("cardIds", cardIds),
+                (rs, rowNum) -> new CardBalance(
+                        rs.getLong("card_id"),
+                        rs.getBigDecimal("ledger_balance"),
+                        rs.getBigDecimal("card_balance")));
+
+        MapSqlParameterSource[] snapshots = new MapSqlParameterSource[balances.size()];
+        for (int i = 0; i < balances.size(); i++) {
+            CardBalance balance = balances.get(i);
+            BigDecimal snapshot = balance.ledger();
+            if (balance.card() != null) {
+                if (balance.card().compareTo(balance.ledger()) != 0) {
+                    log.error("Card {} balance as of {} is {}, its ledger since the last snapshot sums to {}",
+                            balance.cardId(), cutoff, balance.card(), balance.ledger());
+                    mismatchCounter.increment();
+                }
+                snapshot = balance.card();
+            }
+            snapshots[i] = new MapSqlParameterSource("cardId", balance.cardId())
+                    .addValue("cutoff", cutoff)
+                    .addValue("balance", snapshot);
+        }
+        jdbcTemplate.batchUpdate(
+                "insert into balance_snapshot (card_id, as_of, balance) values (:cardId, :cutoff, :balance)",
+                snapshots);
+        return snapshots.length;
+    }
+
+    private record CardBalance(long cardId, BigDecimal ledger, BigDecimal card) {
+    }
+}
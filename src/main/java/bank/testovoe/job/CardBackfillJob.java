@@ -0,0 +1,121 @@
+package bank.testovoe.job;
+
+import bank.testovoe.service.CardNumberHashService;
+import bank.testovoe.service.EncryptionService;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fills the columns derived from the card number ({@code card_number_hash} and {@code last4}) for
+ * cards created before they existed. Runs once in the background after startup, in small
+ * keyset-ordered chunks so it never holds long locks. Until it has finished, lookups fall back to
+ * the encrypted column and masking falls back to decryption for rows it has not reached.
+ * <p>
+ * A card whose number cannot be decrypted or hashed is skipped and counted in
+ * {@code bank.cards.backfill.skipped}. The backfill is then not complete, so lookups keep their
+ * ciphertext fallback and the skipped card stays findable; the next start retries it.
+ */
+@Slf4j
+@Component
+public class CardBackfillJob {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EncryptionService encryptionService;
+    private final CardNumberHashService cardNumberHashService;
+
+    private final AtomicLong skipped = new AtomicLong();
+    private volatile boolean complete;
+
+    public CardBackfillJob(JdbcTemplate jdbcTemplate,
+                           EncryptionService encryptionService,
+                           CardNumberHashService cardNumberHashService,
+                           MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.encryptionService = encryptionService;
+        this.cardNumberHashService = cardNumberHashService;
+        meterRegistry.gauge("bank.cards.backfill.skipped", skipped);
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return the number of cards the last run could not derive the columns for
+     */
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Thread thread = new Thread(this::run, "card-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void run() {
+        long lastId = 0;
+        long updated = 0;
+        skipped.set(0);
+        try {
+            List<PendingCard> chunk;
+            while (!(chunk = nextChunk(lastId)).isEmpty()) {
+                List<Object[]> batch = new ArrayList<>(chunk.size());
+                for (PendingCard card : chunk) {
+                    try {
+                        String cardNumber = encryptionService.decrypt(card.encryptedCardNumber());
+                        batch.add(new Object[]{
+                                cardNumberHashService.hash(cardNumber),
+                                cardNumber.substring(cardNumber.length() - 4),
+                                card.id()
+                        });
+                    } catch (RuntimeException e) {
+                        log.error("Cannot derive card number columns for card {}", card.id(), e);
+                        skipped.incrementAndGet();
+                    }
+                }
+                jdbcTemplate.batchUpdate("""
+                        update card
+                        set card_number_hash = coalesce(card_number_hash, ?), last4 = coalesce(last4, ?)
+                        where id = ?
+                        """, batch);
+                updated += batch.size();
+                lastId = chunk.get(chunk.size() - 1).id();
+                log.info("Card backfill: {} cards updated, last id {}", updated, lastId);
+            }
+            if (skipped.get() > 0) {
+                log.error("Card backfill finished with {} cards skipped, {} cards updated; "
+                        + "lookups keep falling back to the encrypted column", skipped.get(), updated);
+                return;
+            }
+            complete = true;
+            log.info("Card backfill complete, {} cards updated", updated);
+        } catch (RuntimeException e) {
+            log.error("Card backfill stopped at id {}", lastId, e);
+        }
+    }
+
+    private List<PendingCard> nextChunk(long afterId) {
+        return jdbcTemplate.query("""
+                        select id, encrypted_card_number from card
+                        where (card_number_hash is null or last4 is null) and id > ?
+                        order by id limit ?
+                        """,
+                (rs, rowNum) -> new PendingCard(rs.getLong("id"), rs.getString("encrypted_card_number")),
+                afterId, BATCH_SIZE);
+    }
+
+    private record PendingCard(long id, String encryptedCardNumber) {
+    }
+}
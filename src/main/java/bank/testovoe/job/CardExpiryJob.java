@@ -0,0 +1,148 @@
+package bank.testovoe.job;
+
+import bank.testovoe.config.CardCache;
+import bank.testovoe.repository.JobLeaseRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Marks ACTIVE cards whose expiry date has passed as EXPIRED, so they stop passing the status
+ * checks of transfers. Works in chunks of {@code cards.expiry.chunk-size} cards, each one short
+ * transaction that selects ids through the expiry index, locks those rows in ascending id order,
+ * the order transfers lock cards in, and updates them; no entity is loaded.
+ * Only the node holding the {@code card-expiry} lease runs it, and a run that loses its lease
+ * stops after the current chunk.
+ */
+@Slf4j
+@Component
+public class CardExpiryJob {
+
+    private static final String JOB = "card-expiry";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JobLeaseRepository jobLeaseRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int chunkSize;
+    private final Duration lease;
+    private final String holder = UUID.randomUUID().toString();
+    private final Counter expiredCounter;
+    private final Timer runTimer;
+
+    public CardExpiryJob(NamedParameterJdbcTemplate jdbcTemplate,
+                         TransactionTemplate transactionTemplate,
+                         JobLeaseRepository jobLeaseRepository,
+                         ApplicationEventPublisher eventPublisher,
+                         @Value("${cards.expiry.chunk-size:500}") int chunkSize,
+                         @Value("${cards.expiry.lease:5m}") Duration lease,
+                         MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.jobLeaseRepository = jobLeaseRepository;
+        this.eventPublisher = eventPublisher;
+        this.chunkSize = chunkSize;
+        this.lease = lease;
+        this.expiredCounter = meterRegistry.counter("bank.cards.expired");
+        this.runTimer = meterRegistry.timer("bank.cards.expiry.run");
+    }
+
+    @Scheduled(fixedDelayString = "${cards.expiry.interval:1h}", initialDelayString = "${cards.expiry.initial-delay:1m}")
+    public void run() {
+        try {
+            expire(LocalDate.now());
+        } catch (RuntimeException e) {
+            log.error("Card expiry failed", e);
+        }
+    }
+
+    /**
+     * Expires every ACTIVE card with an expiry date before {@code today}, unless another node holds
+     * the lease.
+     *
+     * @return the number of cards expired
+     */
+    public int expire(LocalDate today) {
+        if (!jobLeaseRepository.tryAcquire(JOB, holder, lease)) {
+            log.debug("Card expiry is running on another node");
+            return 0;
+        }
+        Timer.Sample sample = Timer.start();
+        int expired = 0;
+        try {
+            int chunk;
+            do {
+                chunk = expireChunk(today);
+                expired += chunk;
+                if (chunk > 0) {
+                    log.info("Card expiry: {} cards expired", expired);
+                }
+            } while (chunk > 0 && jobLeaseRepository.tryAcquire(JOB, holder, lease));
+            return expired;
+        } finally {
+            sample.stop(runTimer);
+            jobLeaseRepository.release(JOB, holder);
+        }
+    }
+
+    private int expireChunk(LocalDate today) {
+        Integer expired = transactionTemplate.execute(status -> {
+            MapSqlParameterSource params = new MapSqlParameterSource("today", today);
+            List<ExpiredCard> cards = jdbcTemplate.query("""
+                            select id, owner_id from card
+                            where expiry_date < :today and status = 'ACTIVE'
+                            order by expiry_date, id
+                            limit :limit
+                            """,
+                    params.addValue("limit", chunkSize),
+                    (rs, rowNum) -> new ExpiredCard(rs.getLong("id"), rs.getLong("owner_id")));
+            if (cards.isEmpty()) {
+                return 0;
+            }
+
+            // Rows are locked in id order before the update, so a concurrent transfer waiting on
+            // one of them cannot deadlock with this chunk. The predicate is repeated so a card
+            // blocked since the select keeps its status
+            List<Long> locked = jdbcTemplate.queryForList("""
+                            select id from card
+                            where id in (:ids) and expiry_date < :today and status = 'ACTIVE'
+                            order by id
+                            for update
+                            """,
+                    params.addValue("ids", cards.stream().map(ExpiredCard::id).toList()), Long.class);
+            if (locked.isEmpty()) {
+                return 0;
+            }
+            int updated = jdbcTemplate.update("""
+                            update card set status = 'EXPIRED', updated_at = :now
+                            where id in (:locked)
+                            """,
+                    new MapSqlParameterSource("locked", locked).addValue("now", LocalDateTime.now()));
+            Set<Long> owners = new HashSet<>();
+            cards.forEach(card -> owners.add(card.ownerId()));
+            owners.forEach(ownerId -> eventPublisher.publishEvent(new CardCache.CardsChanged(ownerId)));
+            expiredCounter.increment(updated);
+            return updated;
+        });
+        return expired != null ? expired : 0;
+    }
+
+    private record ExpiredCard(long id, long ownerId) {
+    }
+}
@@ -0,0 +1,161 @@
+package bank.testovoe.job;
+
+import bank.testovoe.config.CardCache;
+import bank.testovoe.model.DepositStatus;
+import bank.testovoe.repository.CardRepository;
+import bank.testovoe.service.LedgerService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Applies queued deposits (see {@link bank.testovoe.model.DepositIntake}). Each batch claims the
+ * oldest pending rows with {@code FOR UPDATE SKIP LOCKED}, so several nodes can drain the queue
+ * without waiting on each other, and credits every card once with the sum of its deposits. Cards
+ * are updated in ascending id order, the same order transfers lock them in.
+ * <p>
+ * The scheduler pool ({@code spring.task.scheduling.pool.size}) has a thread per job, so other
+ * jobs' runs do not delay this one, and a run applies at most
+ * {@code deposits.batch.max-batches-per-run} batches before yielding its thread.
+ */
+@Slf4j
+@Component
+public class DepositBatchJob {
+
+    private static final String REJECTED_REASON = "Card blocked or deleted";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CardRepository cardRepository;
+    private final LedgerService ledgerService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int maxSize;
+    private final int maxBatchesPerRun;
+    private final Timer lagTimer;
+
+    public DepositBatchJob(NamedParameterJdbcTemplate jdbcTemplate,
+                           TransactionTemplate transactionTemplate,
+                           CardRepository cardRepository,
+                           LedgerService ledgerService,
+                           ApplicationEventPublisher eventPublisher,
+                           @Value("${deposits.batch.max-size:1000}") int maxSize,
+                           @Value("${deposits.batch.max-batches-per-run:20}") int maxBatchesPerRun,
+                           MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.cardRepository = cardRepository;
+        this.ledgerService = ledgerService;
+        this.eventPublisher = eventPublisher;
+        this.maxSize = maxSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.lagTimer = meterRegistry.timer("bank.deposit.lag");
+    }
+
+    @Scheduled(fixedDelayString = "${deposits.batch.interval:200ms}")
+    public void run() {
+        try {
+            // A full batch means more are waiting; keep draining instead of sleeping an interval,
+            // but give the scheduler thread back after a bounded number of batches
+            int batches = 0;
+            while (batches++ < maxBatchesPerRun && applyBatch() == maxSize) {
+                log.debug("Deposit batch full, draining further");
+            }
+        } catch (RuntimeException e) {
+            log.error("Deposit batch failed", e);
+        }
+    }
+
+    /**
+     * Claims and applies up to {@code deposits.batch.max-size} pending deposits in one transaction.
+     *
+     * @return the number of deposits processed, applied or rejected
+     */
+    public int applyBatch() {
+        Integer processed = transactionTemplate.execute(status -> {
+            List<PendingDeposit> pending = jdbcTemplate.query("""
+                            select id, card_id, owner_id, amount, created_at from deposit_intake
+                            where status = 'PENDING'
+                            order by id limit :limit
+                            for update skip locked
+                            """,
+                    new MapSqlParameterSource("limit", maxSize),
+                    (rs, rowNum) -> new PendingDeposit(
+                            rs.getLong("id"),
+                            rs.getLong("card_id"),
+                            rs.getLong("owner_id"),
+                            rs.getBigDecimal("amount"),
+                            rs.getObject("created_at", LocalDateTime.class)));
+            if (pending.isEmpty()) {
+                return 0;
+            }
+
+            Map<Long, List<PendingDeposit>> byCard = new TreeMap<>();
+            for (PendingDeposit deposit : pending) {
+                byCard.computeIfAbsent(deposit.cardId(), id -> new ArrayList<>()).add(deposit);
+            }
+
+            LocalDateTime now = LocalDateTime.now();
+            List<Long> applied = new ArrayList<>();
+            List<Long> rejected = new ArrayList<>();
+            Set<Long> owners = new HashSet<>();
+            byCard.forEach((cardId, deposits) -> {
+                BigDecimal total = deposits.stream()
+                        .map(PendingDeposit::amount)
+                        .reduce(BigDecimal.ZERO, BigDecimal::add);
+                if (cardRepository.deposit(cardId, total, now) == 1) {
+                    for (PendingDeposit deposit : deposits) {
+                        ledgerService.recordDeposit(cardId, deposit.amount(), now);
+                        lagTimer.record(Duration.between(deposit.createdAt(), now));
+                        applied.add(deposit.id());
+                        owners.add(deposit.ownerId());
+                    }
+                } else {
+                    deposits.forEach(deposit -> rejected.add(deposit.id()));
+                }
+            });
+
+            markProcessed(applied, DepositStatus.APPLIED, null, now);
+            markProcessed(rejected, DepositStatus.REJECTED, REJECTED_REASON, now);
+            owners.forEach(ownerId -> eventPublisher.publishEvent(new CardCache.CardsChanged(ownerId)));
+            log.debug("Deposit batch: {} applied, {} rejected on {} cards",
+                    applied.size(), rejected.size(), byCard.size());
+            return pending.size();
+        });
+        return processed != null ? processed : 0;
+    }
+
+    private void markProcessed(List<Long> ids, DepositStatus status, String reason, LocalDateTime now) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update("""
+                        update deposit_intake
+                        set status = :status, failure_reason = :reason, processed_at = :now
+                        where id in (:ids)
+                        """,
+                new MapSqlParameterSource("status", status.name())
+                        .addValue("reason", reason)
+                        .addValue("now", now)
+                        .addValue("ids", ids));
+    }
+
+    private record PendingDeposit(long id, long cardId, long ownerId, BigDecimal amount, LocalDateTime createdAt) {
+    }
+}
@@ -0,0 +1,76 @@
+package bank.testovoe.job;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Deletes {@code idempotency_key} rows older than {@code idempotency.retention}, the window in
+ * which a retried transfer is replayed instead of executed again. Works in chunks of
+ * {@code idempotency.purge.chunk-size} rows, oldest first through the {@code created_at} index,
+ * each one autocommitted DELETE, so the unique index every keyed transfer checks stays bounded
+ * by the traffic of one window. Runs on every node; concurrent runs just find fewer rows.
+ */
+@Slf4j
+@Component
+public class IdempotencyKeyPurgeJob {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final Duration retention;
+    private final int chunkSize;
+    private final Counter purgedCounter;
+
+    public IdempotencyKeyPurgeJob(NamedParameterJdbcTemplate jdbcTemplate,
+                                  @Value("${idempotency.retention:24h}") Duration retention,
+                                  @Value("${idempotency.purge.chunk-size:1000}") int chunkSize,
+                                  MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.retention = retention;
+        this.chunkSize = chunkSize;
+        this.purgedCounter = meterRegistry.counter("bank.idempotency.purged");
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.purge.interval:10m}",
+            initialDelayString = "${idempotency.purge.interval:10m}")
+    public void run() {
+        try {
+            purge(LocalDateTime.now().minus(retention));
+        } catch (RuntimeException e) {
+            log.error("Idempotency key purge failed", e);
+        }
+    }
+
+    /**
+     * Deletes every key created before {@code before}.
+     *
+     * @return the number of keys deleted
+     */
+    public int purge(LocalDateTime before) {
+        int purged = 0;
+        int chunk;
+        do {
+            chunk = jdbcTemplate.update("""
+                            delete from idempotency_key where id in (
+                                select id from idempotency_key
+                                where created_at < :before
+                                order by created_at
+                                limit :limit)
+                            """,
+                    new MapSqlParameterSource("before", before).addValue("limit", chunkSize));
+            purged += chunk;
+            purgedCounter.increment(chunk);
+        } while (chunk == chunkSize);
+        if (purged > 0) {
+            log.info("Idempotency key purge: {} keys older than {} deleted", purged, before);
+        }
+        return purged;
+    }
+}
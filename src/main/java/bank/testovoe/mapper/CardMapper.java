@@ -1,6 +1,7 @@
 package bank.testovoe.mapper;
 
 import bank.testovoe.dto.card.CardDto;
+import bank.testovoe.dto.card.CardSummary;
 import bank.testovoe.model.Card;
 import bank.testovoe.service.EncryptionService;
 import lombok.RequiredArgsConstructor;
@@ -10,22 +11,46 @@ import org.springframework.stereotype.Component;
 @RequiredArgsConstructor
 public class CardMapper {
 
+    private static final String MASK_PREFIX = "**** **** **** ";
+
     private final EncryptionService encryptionService;
 
     public CardDto toDto(Card card) {
-        String decrypted = encryptionService.decrypt(card.getEncryptedCardNumber());
-        String masked = maskCardNumber(decrypted);
-
         return CardDto.builder()
                 .id(card.getId())
-                .maskedCardNumber(masked)
+                .maskedCardNumber(maskCardNumber(card))
                 .expiryDate(card.getExpiryDate())
                 .status(card.getStatus())
-                .balance(card.getBalance())
+                .balance(card.getEffectiveBalance())
+                .build();
+    }
+
+    public CardDto toDto(CardSummary card) {
+        return CardDto.builder()
+                .id(card.id())
+                .maskedCardNumber(maskCardNumber(card.last4(), card.encryptedCardNumber()))
+                .expiryDate(card.expiryDate())
+                .status(card.status())
+                .balance(card.balance())
                 .build();
     }
 
+    /**
+     * Masks from the stored last four digits; only cards the backfill has not reached yet are
+     * decrypted.
+     */
+    public String maskCardNumber(Card card) {
+        return maskCardNumber(card.getLast4(), card.getEncryptedCardNumber());
+    }
+
+    public String maskCardNumber(String last4, String encryptedCardNumber) {
+        if (last4 != null) {
+            return MASK_PREFIX + last4;
+        }
+        return maskCardNumber(encryptionService.decrypt(encryptedCardNumber));
+    }
+
     public String maskCardNumber(String cardNumber) {
-        return "**** **** **** " + cardNumber.substring(cardNumber.length() - 4);
+        return MASK_PREFIX + cardNumber.substring(cardNumber.length() - 4);
     }
 }
@@ -1,8 +1,8 @@
 package bank.testovoe.mapper;
 
+import bank.testovoe.dto.transfer.TransferHistoryRow;
 import bank.testovoe.dto.transfer.TransferResponse;
 import bank.testovoe.model.Transfer;
-import bank.testovoe.service.EncryptionService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
@@ -10,19 +10,25 @@ import org.springframework.stereotype.Component;
 @RequiredArgsConstructor
 public class TransferMapper {
 
-    private final EncryptionService encryptionService;
     private final CardMapper cardMapper;
 
     public TransferResponse toDto(Transfer transfer) {
-        String fromDecrypted = encryptionService.decrypt(transfer.getFromCard().getEncryptedCardNumber());
-        String toDecrypted = encryptionService.decrypt(transfer.getToCard().getEncryptedCardNumber());
-
         return TransferResponse.builder()
                 .id(transfer.getId())
-                .fromCardNumber(cardMapper.maskCardNumber(fromDecrypted))
-                .toCardNumber(cardMapper.maskCardNumber(toDecrypted))
+                .fromCardNumber(cardMapper.maskCardNumber(transfer.getFromCard()))
+                .toCardNumber(cardMapper.maskCardNumber(transfer.getToCard()))
                 .amount(transfer.getAmount())
                 .timestamp(transfer.getTimestamp())
                 .build();
     }
+
+    public TransferResponse toDto(TransferHistoryRow row) {
+        return TransferResponse.builder()
+                .id(row.id())
+                .fromCardNumber(cardMapper.maskCardNumber(row.fromLast4(), row.fromEncryptedCardNumber()))
+                .toCardNumber(cardMapper.maskCardNumber(row.toLast4(), row.toEncryptedCardNumber()))
+                .amount(row.amount())
+                .timestamp(row.timestamp())
+                .build();
+    }
 }
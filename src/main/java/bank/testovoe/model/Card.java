@@ -5,18 +5,21 @@ import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.PrePersist;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.PreUpdate;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Formula;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -32,16 +35,31 @@ import java.util.List;
 @Builder
 public class Card {
 
+    /**
+     * SQL for {@code balance} plus the card's stripes, over the {@code card} table's columns.
+     */
+    public static final String EFFECTIVE_BALANCE = """
+            case when balance_stripes = 0 then balance
+            else balance + (select coalesce(sum(s.balance), 0) from card_balance_stripe s where s.card_id = id) end
+            """;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "card_seq")
+    @SequenceGenerator(name = "card_seq", sequenceName = "card_seq", allocationSize = 50)
     private Long id;
 
-    @ManyToOne(optional = false)
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
     private User owner;
 
     @Column(nullable = false)
     private String encryptedCardNumber;
 
+    @Column(length = 32)
+    private byte[] cardNumberHash;
+
+    @Column(length = 4)
+    private String last4;
+
     @Column(nullable = false)
     private LocalDate expiryDate;
 
@@ -52,6 +70,20 @@ public class Card {
     @Column(nullable = false)
     private BigDecimal balance = BigDecimal.ZERO;
 
+    /**
+     * Number of {@code card_balance_stripe} rows holding this card's balance, 0 if it is not
+     * striped.
+     */
+    @Column(nullable = false)
+    private int balanceStripes;
+
+    /**
+     * {@code balance} plus the card's stripes, i.e. the balance to show and filter by. The stripe
+     * subquery only runs for striped cards.
+     */
+    @Formula(EFFECTIVE_BALANCE)
+    private BigDecimal effectiveBalance;
+
     @Column(nullable = false)
     private LocalDateTime createdAt;
 
@@ -64,6 +96,13 @@ public class Card {
     @OneToMany(mappedBy = "toCard", cascade = CascadeType.ALL)
     private List<Transfer> incomingTransfers = new ArrayList<>();
 
+    /**
+     * Falls back to {@code balance} for cards that have not been loaded from the database.
+     */
+    public BigDecimal getEffectiveBalance() {
+        return effectiveBalance != null ? effectiveBalance : balance;
+    }
+
     @PrePersist
     public void prePersist() {
         createdAt = LocalDateTime.now();
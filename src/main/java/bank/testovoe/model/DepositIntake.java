@@ -0,0 +1,63 @@
+package bank.testovoe.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * A deposit accepted for asynchronous application. It stays {@code PENDING} until
+ * {@link bank.testovoe.job.DepositBatchJob} applies it together with the other pending deposits
+ * of its card, or rejects it because the card was blocked or deleted in the meantime.
+ */
+@Entity
+@Table(name = "deposit_intake")
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DepositIntake {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "deposit_intake_seq")
+    @SequenceGenerator(name = "deposit_intake_seq", sequenceName = "deposit_intake_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false, updatable = false)
+    private Long cardId;
+
+    @Column(nullable = false, updatable = false)
+    private Long ownerId;
+
+    @Column(nullable = false, updatable = false)
+    private BigDecimal amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private DepositStatus status;
+
+    private String failureReason;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    private LocalDateTime processedAt;
+
+    @PrePersist
+    public void prePersist() {
+        createdAt = LocalDateTime.now();
+    }
+}
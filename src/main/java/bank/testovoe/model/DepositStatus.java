@@ -0,0 +1,7 @@
+package bank.testovoe.model;
+
+public enum DepositStatus {
+    PENDING,
+    APPLIED,
+    REJECTED
+}
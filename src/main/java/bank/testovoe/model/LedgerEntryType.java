@@ -0,0 +1,6 @@
+package bank.testovoe.model;
+
+public enum LedgerEntryType {
+    DEPOSIT,
+    TRANSFER
+}
@@ -1,8 +1,10 @@
 package bank.testovoe.model;
 
+import bank.testovoe.config.security.UserPrincipalCache;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
@@ -10,6 +12,7 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
@@ -25,6 +28,7 @@ import java.util.List;
 @AllArgsConstructor
 @Builder
 @Table(name = "users")
+@EntityListeners(UserPrincipalCache.class)
 public class User {
 
     @Id
@@ -43,4 +47,11 @@ public class User {
 
     @OneToMany(mappedBy = "owner", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Card> cards;
+
+    /**
+     * Email as last loaded or written, so {@link UserPrincipalCache} can evict the old email's
+     * principal when the email changes.
+     */
+    @Transient
+    private String loadedEmail;
 }
@@ -0,0 +1,12 @@
+package bank.testovoe.repository;
+
+import bank.testovoe.model.BalanceSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface BalanceSnapshotRepository extends JpaRepository<BalanceSnapshot, Long> {
+
+    Optional<BalanceSnapshot> findFirstByCardIdAndAsOfLessThanEqualOrderByAsOfDesc(Long cardId, LocalDateTime asOf);
+}
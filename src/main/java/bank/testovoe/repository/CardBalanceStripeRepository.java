@@ -0,0 +1,128 @@
+package bank.testovoe.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Statements on {@code card_balance_stripe}. Plain JDBC rather than JPA: stripe rows are never
+ * loaded as entities, and these updates must not flush or clear the persistence context that a
+ * bulk transfer keeps its locked cards in.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CardBalanceStripeRepository {
+
+    private static final String CARD_ACTIVE = """
+            exists (select 1 from card c where c.id = card_balance_stripe.card_id and c.status = 'ACTIVE')
+            """;
+    private static final String CARD_NOT_BLOCKED = """
+            exists (select 1 from card c where c.id = card_balance_stripe.card_id and c.status <> 'BLOCKED')
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void create(long cardId, int stripes, BigDecimal openingBalance) {
+        List<Object[]> rows = new ArrayList<>(stripes);
+        for (int stripe = 0; stripe < stripes; stripe++) {
+            rows.add(new Object[]{cardId, stripe, stripe == 0 ? openingBalance : BigDecimal.ZERO});
+        }
+        jdbcTemplate.batchUpdate("insert into card_balance_stripe (card_id, stripe, balance) values (?, ?, ?)", rows);
+    }
+
+    /**
+     * Locks the richest stripe of the card that covers {@code amount} and is not locked by another
+     * transaction. Never waits, so it cannot take part in a deadlock.
+     *
+     * @return the stripe number, or {@code null} if no such stripe is free
+     */
+    public Integer lockCovering(long cardId, BigDecimal amount) {
+        List<Integer> stripes = jdbcTemplate.queryForList("""
+                select stripe from card_balance_stripe
+                where card_id = ? and balance >= ?
+                order by balance desc
+                limit 1
+                for update skip locked
+                """, Integer.class, cardId, amount);
+        return stripes.isEmpty() ? null : stripes.get(0);
+    }
+
+    /**
+     * @return 1 if the stripe of an active card covered {@code amount} and was debited, 0 otherwise
+     */
+    public int debit(long cardId, int stripe, BigDecimal amount) {
+        return jdbcTemplate.update("""
+                update card_balance_stripe set balance = balance - ?
+                where card_id = ? and stripe = ? and balance >= ? and\s""" + CARD_ACTIVE,
+                amount, cardId, stripe, amount);
+    }
+
+    /**
+     * @return 1 if the stripe exists and its card is active (or, for a deposit, not blocked)
+     */
+    public int credit(long cardId, int stripe, BigDecimal amount, boolean deposit) {
+        return jdbcTemplate.update("""
+                update card_balance_stripe set balance = balance + ?
+                where card_id = ? and stripe = ? and\s""" + (deposit ? CARD_NOT_BLOCKED : CARD_ACTIVE),
+                amount, cardId, stripe);
+    }
+
+    /**
+     * Locks the card's funded stripes that no other transaction holds, richest first. Never waits.
+     */
+    public List<StripeBalance> lockFunded(long cardId) {
+        return jdbcTemplate.query("""
+                select stripe, balance from card_balance_stripe
+                where card_id = ? and balance > 0
+                order by balance desc
+                for update skip locked
+                """, (rs, rowNum) -> new StripeBalance(rs.getInt("stripe"), rs.getBigDecimal("balance")), cardId);
+    }
+
+    /**
+     * Locks the first stripe from {@code start} on, wrapping around, that no other transaction
+     * holds. Never waits.
+     *
+     * @return the stripe number, or {@code null} if every stripe is held
+     */
+    public Integer lockFree(long cardId, int start, int stripes) {
+        List<Integer> free = jdbcTemplate.queryForList("""
+                select stripe from card_balance_stripe
+                where card_id = ?
+                order by mod(stripe + ?, ?)
+                limit 1
+                for update skip locked
+                """, Integer.class, cardId, stripes - start, stripes);
+        return free.isEmpty() ? null : free.get(0);
+    }
+
+    /**
+     * Puts back an amount this transaction debited from the stripe.
+     */
+    public void restore(long cardId, int stripe, BigDecimal amount) {
+        jdbcTemplate.update("update card_balance_stripe set balance = balance + ? where card_id = ? and stripe = ?",
+                amount, cardId, stripe);
+    }
+
+    /**
+     * Locks all stripes of a card in stripe order, waiting for transactions that hold them.
+     *
+     * @return the stripe balances indexed by stripe number, empty if the card is not striped
+     */
+    public List<BigDecimal> lockAll(long cardId) {
+        return jdbcTemplate.queryForList(
+                "select balance from card_balance_stripe where card_id = ? order by stripe for update",
+                BigDecimal.class, cardId);
+    }
+
+    public void deleteAll(long cardId) {
+        jdbcTemplate.update("delete from card_balance_stripe where card_id = ?", cardId);
+    }
+
+    public record StripeBalance(int stripe, BigDecimal balance) {
+    }
+}
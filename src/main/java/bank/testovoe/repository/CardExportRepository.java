@@ -0,0 +1,52 @@
+package bank.testovoe.repository;
+
+import bank.testovoe.model.Card;
+import bank.testovoe.model.CardStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.function.Consumer;
+
+/**
+ * Streams the whole card table through a forward-only cursor. Rows are handed to the consumer as
+ * they are fetched and are never collected, so heap use does not depend on the table size.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CardExportRepository {
+
+    private static final int FETCH_SIZE = 1000;
+
+    private static final String SELECT_ALL = "select id, encrypted_card_number, last4, expiry_date, status, "
+            + Card.EFFECTIVE_BALANCE + " as balance from card order by id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Must run in a transaction: the PostgreSQL driver only uses a server-side cursor (and honours
+     * the fetch size) when auto-commit is off.
+     */
+    @Transactional(readOnly = true)
+    public void streamAll(Consumer<Card> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    SELECT_ALL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(FETCH_SIZE);
+            return statement;
+        }, rs -> {
+            consumer.accept(Card.builder()
+                    .id(rs.getLong("id"))
+                    .encryptedCardNumber(rs.getString("encrypted_card_number"))
+                    .last4(rs.getString("last4"))
+                    .expiryDate(rs.getObject("expiry_date", LocalDate.class))
+                    .status(CardStatus.valueOf(rs.getString("status")))
+                    .balance(rs.getBigDecimal("balance"))
+                    .build());
+        });
+    }
+}
@@ -0,0 +1,98 @@
+package bank.testovoe.repository;
+
+import bank.testovoe.model.CardStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Set-based statements for bulk card issuance: one query per chunk for each kind of lookup and a
+ * JDBC batch for the inserts, with ids drawn from {@code card_seq} the way Hibernate draws them,
+ * so issued cards never collide with cards saved through JPA.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CardIssuanceRepository {
+
+    /**
+     * Must match the allocation size of {@code card_seq} in {@link bank.testovoe.model.Card}.
+     */
+    private static final int ALLOCATION_SIZE = 50;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Reserves {@code count} card ids. Like Hibernate's pooled optimizer, each nextval owns
+     * {@code value - 49 .. value}.
+     */
+    public List<Long> nextIds(int count) {
+        List<Long> ids = new ArrayList<>(count);
+        while (ids.size() < count) {
+            Long high = jdbcTemplate.getJdbcTemplate().queryForObject("select nextval('card_seq')", Long.class);
+            for (long id = Math.max(1, high - ALLOCATION_SIZE + 1); id <= high && ids.size() < count; id++) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    public Set<Long> findExistingUserIds(Collection<Long> userIds) {
+        return new HashSet<>(jdbcTemplate.queryForList("select id from users where id in (:ids)",
+                new MapSqlParameterSource("ids", userIds), Long.class));
+    }
+
+    /**
+     * @return the given blind indexes that already belong to a card, wrapped so they compare by content
+     */
+    public Set<ByteBuffer> findExistingHashes(Collection<byte[]> hashes) {
+        Set<ByteBuffer> existing = new HashSet<>();
+        jdbcTemplate.query("select card_number_hash from card where card_number_hash in (:hashes)",
+                new MapSqlParameterSource("hashes", hashes),
+                rs -> {
+                    existing.add(ByteBuffer.wrap(rs.getBytes(1)));
+                });
+        return existing;
+    }
+
+    /**
+     * Looks ciphertexts up for cards the backfill has not given a blind index yet.
+     */
+    public Set<String> findExistingEncrypted(Collection<String> encryptedCardNumbers) {
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "select encrypted_card_number from card where card_number_hash is null and encrypted_card_number in (:encrypted)",
+                new MapSqlParameterSource("encrypted", encryptedCardNumbers), String.class));
+    }
+
+    public void insertAll(List<NewCard> cards) {
+        LocalDateTime now = LocalDateTime.now();
+        MapSqlParameterSource[] rows = cards.stream()
+                .map(card -> new MapSqlParameterSource("id", card.id())
+                        .addValue("ownerId", card.ownerId())
+                        .addValue("encrypted", card.encryptedCardNumber())
+                        .addValue("hash", card.cardNumberHash())
+                        .addValue("last4", card.last4())
+                        .addValue("expiryDate", card.expiryDate())
+                        .addValue("status", CardStatus.ACTIVE.name())
+                        .addValue("now", now))
+                .toArray(MapSqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate("""
+                insert into card (id, owner_id, encrypted_card_number, card_number_hash, last4, expiry_date,
+                                  status, balance, balance_stripes, created_at, updated_at)
+                values (:id, :ownerId, :encrypted, :hash, :last4, :expiryDate, :status, 0, 0, :now, :now)
+                """, rows);
+    }
+
+    public record NewCard(long id, long ownerId, String encryptedCardNumber, byte[] cardNumberHash,
+                          String last4, LocalDate expiryDate) {
+    }
+}
@@ -1,22 +1,58 @@
 package bank.testovoe.repository;
 
+import bank.testovoe.dto.card.CardSummary;
 import bank.testovoe.model.Card;
 import bank.testovoe.model.User;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
-public interface CardRepository extends JpaRepository<Card, Long>, JpaSpecificationExecutor<Card> {
+public interface CardRepository extends JpaRepository<Card, Long>, JpaSpecificationExecutor<Card>, CardSearchRepository {
+
+    /**
+     * Id and lookup hash of a card, read without putting the entity into the persistence context.
+     */
+    interface CardRef {
+        Long getId();
+
+        byte[] getCardNumberHash();
+    }
 
     Page<Card> findAll(Specification<Card> spec, Pageable pageable);
 
     List<Card> findByOwner(User owner);
 
+    @Query("select c.id from Card c where c.owner = :owner")
+    List<Long> findIdsByOwner(@Param("owner") User owner);
+
+    @Query("""
+            select new bank.testovoe.dto.card.CardSummary(
+                c.id, c.last4, c.encryptedCardNumber, c.expiryDate, c.status, c.effectiveBalance)
+            from Card c where c.owner = :owner order by c.id
+            """)
+    List<CardSummary> findSummariesByOwner(@Param("owner") User owner);
+
+    @Query("""
+            select new bank.testovoe.dto.card.CardSummary(
+                c.id, c.last4, c.encryptedCardNumber, c.expiryDate, c.status, c.effectiveBalance)
+            from Card c where c.id > :afterId order by c.id
+            """)
+    List<CardSummary> findSummariesAfterId(@Param("afterId") Long afterId, Limit limit);
+
     Optional<Card> findByIdAndOwner(Long id, User owner);
 
     Optional<Card> findByEncryptedCardNumberAndOwner(String encryptedCardNumber, User owner);
@@ -25,4 +61,62 @@ public interface CardRepository extends JpaRepository<Card, Long>, JpaSpecificat
 
     boolean existsByEncryptedCardNumber(String encryptedCardNumber);
 
+    Optional<Card> findByCardNumberHash(byte[] cardNumberHash);
+
+    Optional<Card> findByCardNumberHashAndOwner(byte[] cardNumberHash, User owner);
+
+    boolean existsByCardNumberHash(byte[] cardNumberHash);
+
+    List<Card> findByOwnerAndCardNumberHashIn(User owner, Collection<byte[]> cardNumberHashes);
+
+    List<CardRef> findRefsByOwnerAndCardNumberHashIn(User owner, Collection<byte[]> cardNumberHashes);
+
+    Optional<CardRef> findRefByEncryptedCardNumberAndOwner(String encryptedCardNumber, User owner);
+
+    /**
+     * Loads and locks cards for a multi-card balance change. Rows are locked in ascending id
+     * order, the same order single transfers update them in, so the two cannot deadlock.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Card c where c.id in :ids order by c.id")
+    List<Card> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Atomically withdraws {@code amount} from an active card. The row lock is taken by the
+     * UPDATE itself, so callers must debit/credit cards in ascending id order to avoid deadlocks.
+     *
+     * @return 1 if the card was debited, 0 if it is not active or has insufficient funds
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update Card c set c.balance = c.balance - :amount, c.updatedAt = :now
+            where c.id = :id and c.status = bank.testovoe.model.CardStatus.ACTIVE and c.balance >= :amount
+            """)
+    int debit(@Param("id") Long id, @Param("amount") BigDecimal amount, @Param("now") LocalDateTime now);
+
+    /**
+     * Atomically deposits {@code amount} to an active card.
+     *
+     * @return 1 if the card was credited, 0 if it is not active
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update Card c set c.balance = c.balance + :amount, c.updatedAt = :now
+            where c.id = :id and c.status = bank.testovoe.model.CardStatus.ACTIVE
+            """)
+    int credit(@Param("id") Long id, @Param("amount") BigDecimal amount, @Param("now") LocalDateTime now);
+
+    /**
+     * Atomically tops up a card that is not blocked, so concurrent deposits and transfers never
+     * overwrite each other's balance.
+     *
+     * @return 1 if the card was topped up, 0 if it is blocked
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update Card c set c.balance = c.balance + :amount, c.updatedAt = :now
+            where c.id = :id and c.status <> bank.testovoe.model.CardStatus.BLOCKED
+            """)
+    int deposit(@Param("id") Long id, @Param("amount") BigDecimal amount, @Param("now") LocalDateTime now);
+
 }
@@ -0,0 +1,16 @@
+package bank.testovoe.repository;
+
+import bank.testovoe.model.Card;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+public interface CardSearchRepository {
+
+    /**
+     * The content of one page of {@code spec}, without the {@code COUNT(*)} that
+     * {@code findAll(spec, pageable)} always runs.
+     */
+    List<Card> findPageContent(Specification<Card> spec, Pageable pageable);
+}
@@ -0,0 +1,11 @@
+package bank.testovoe.repository;
+
+import bank.testovoe.model.DepositIntake;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+
+public interface DepositIntakeRepository extends JpaRepository<DepositIntake, Long> {
+
+    Optional<DepositIntake> findByIdAndOwnerId(Long id, Long ownerId);
+}
@@ -0,0 +1,41 @@
+package bank.testovoe.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Leases on {@code job_lease} rows that elect a single node to run a scheduled job. Each call is
+ * one autocommitted conditional UPDATE, so no database lock is held while the job works; the
+ * holder renews the lease between units of work and gives it up when done.
+ */
+@Repository
+@RequiredArgsConstructor
+public class JobLeaseRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Takes the lease on {@code job} for {@code duration} if it is free or expired, or extends it if
+     * {@code holder} already has it.
+     *
+     * @return whether {@code holder} now holds the lease
+     */
+    public boolean tryAcquire(String job, String holder, Duration duration) {
+        LocalDateTime now = LocalDateTime.now();
+        return jdbcTemplate.update("""
+                update job_lease set locked_by = ?, locked_until = ?
+                where name = ? and (locked_until < ? or locked_by = ?)
+                """, holder, now.plus(duration), job, now, holder) == 1;
+    }
+
+    public void release(String job, String holder) {
+        jdbcTemplate.update("""
+                update job_lease set locked_by = null, locked_until = ?
+                where name = ? and locked_by = ?
+                """, LocalDateTime.now(), job, holder);
+    }
+}
@@ -0,0 +1,24 @@
+package bank.testovoe.repository;
+
+import bank.testovoe.model.LedgerEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
+
+    /**
+     * Net amount of a card's entries created in {@code (after, upTo]}; a range scan of
+     * {@code idx_ledger_entry_card_created}.
+     */
+    @Query("""
+            select coalesce(sum(e.amount), 0) from LedgerEntry e
+            where e.cardId = :cardId and e.createdAt > :after and e.createdAt <= :upTo
+            """)
+    BigDecimal sumAmount(@Param("cardId") Long cardId,
+                         @Param("after") LocalDateTime after,
+                         @Param("upTo") LocalDateTime upTo);
+}
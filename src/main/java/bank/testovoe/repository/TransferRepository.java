@@ -1,7 +1,61 @@
 package bank.testovoe.repository;
 
+import bank.testovoe.dto.transfer.TransferHistoryRow;
 import bank.testovoe.model.Transfer;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
 
 public interface TransferRepository extends JpaRepository<Transfer, Long> {
+
+    /**
+     * Transfers debited from a card, newest first, starting strictly before
+     * {@code (beforeTimestamp, beforeId)}. Served by a backward range scan of
+     * {@code idx_transfer_from_card_timestamp}, so the cost depends on the limit, not on the
+     * length of the history.
+     */
+    @Query("""
+            select new bank.testovoe.dto.transfer.TransferHistoryRow(
+                t.id, t.amount, t.timestamp, f.last4, f.encryptedCardNumber, r.last4, r.encryptedCardNumber)
+            from Transfer t join t.fromCard f join t.toCard r
+            where t.fromCard.id = :cardId and t.timestamp >= :from
+              and (t.timestamp < :beforeTimestamp or (t.timestamp = :beforeTimestamp and t.id < :beforeId))
+            order by t.timestamp desc, t.id desc
+            """)
+    List<TransferHistoryRow> findOutgoingHistory(@Param("cardId") Long cardId,
+                                                 @Param("from") LocalDateTime from,
+                                                 @Param("beforeTimestamp") LocalDateTime beforeTimestamp,
+                                                 @Param("beforeId") Long beforeId,
+                                                 Limit limit);
+
+    /**
+     * Same as {@link #findOutgoingHistory} for transfers credited to a card, served by
+     * {@code idx_transfer_to_card_timestamp}.
+     */
+    @Query("""
+            select new bank.testovoe.dto.transfer.TransferHistoryRow(
+                t.id, t.amount, t.timestamp, f.last4, f.encryptedCardNumber, r.last4, r.encryptedCardNumber)
+            from Transfer t join t.fromCard f join t.toCard r
+            where t.toCard.id = :cardId and t.timestamp >= :from
+              and (t.timestamp < :beforeTimestamp or (t.timestamp = :beforeTimestamp and t.id < :beforeId))
+            order by t.timestamp desc, t.id desc
+            """)
+    List<TransferHistoryRow> findIncomingHistory(@Param("cardId") Long cardId,
+                                                 @Param("from") LocalDateTime from,
+                                                 @Param("beforeTimestamp") LocalDateTime beforeTimestamp,
+                                                 @Param("beforeId") Long beforeId,
+                                                 Limit limit);
+
+    @Query("""
+            select new bank.testovoe.dto.transfer.TransferHistoryRow(
+                t.id, t.amount, t.timestamp, f.last4, f.encryptedCardNumber, r.last4, r.encryptedCardNumber)
+            from Transfer t join t.fromCard f join t.toCard r
+            where t.id = :id
+            """)
+    Optional<TransferHistoryRow> findHistoryRowById(@Param("id") Long id);
 }
@@ -4,6 +4,6 @@ import bank.testovoe.model.User;
 
 public interface AuthService {
 
-    String login(String email, String password);
-    User register(String email, String password);
+    String login(String email, String password, String clientIp);
+    User register(String email, String password, String clientIp);
 }
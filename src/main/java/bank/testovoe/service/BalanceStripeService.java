@@ -0,0 +1,13 @@
+package bank.testovoe.service;
+
+import bank.testovoe.model.Card;
+
+import java.math.BigDecimal;
+
+public interface BalanceStripeService {
+
+    BigDecimal debit(Card card, BigDecimal amount, BigDecimal reserve);
+    boolean credit(Card card, BigDecimal amount, boolean deposit);
+    void stripe(Long cardId, int stripes);
+    void unstripe(Long cardId);
+}
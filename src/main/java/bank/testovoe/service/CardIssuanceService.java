@@ -0,0 +1,11 @@
+package bank.testovoe.service;
+
+import bank.testovoe.dto.card.CardIssuanceResult;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.Consumer;
+
+public interface CardIssuanceService {
+    void issue(Reader csv, Consumer<CardIssuanceResult> report) throws IOException;
+}
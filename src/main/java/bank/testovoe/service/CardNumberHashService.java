@@ -0,0 +1,5 @@
+package bank.testovoe.service;
+
+public interface CardNumberHashService {
+    byte[] hash(String cardNumber);
+}
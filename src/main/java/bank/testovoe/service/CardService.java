@@ -1,7 +1,10 @@
 package bank.testovoe.service;
 
+import bank.testovoe.dto.KeysetPage;
+import bank.testovoe.dto.card.CardSummary;
 import bank.testovoe.model.Card;
 import bank.testovoe.model.CardStatus;
+import bank.testovoe.model.DepositIntake;
 import bank.testovoe.model.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -12,7 +15,8 @@ import java.util.List;
 import java.util.Optional;
 
 public interface CardService {
-    List<Card> getCardsForUser(User user);
+    List<CardSummary> getCardsForUser(User user);
+    List<CardSummary> getAllCards(Long afterId, int limit);
     Card getByIdAndUser(Long cardId, User user);
     Card createCard(User owner, String cardNumber, LocalDate expiryDate);
     void blockCard(String cardNumber, User user);
@@ -20,6 +24,9 @@ public interface CardService {
     void deleteCard(String cardNumber);
     void blockAnyCard(String cardNumber);
     void deposit(String cardId, BigDecimal amount, User user);
+    DepositIntake submitDeposit(String cardNumber, BigDecimal amount, User user);
+    DepositIntake getDeposit(Long id, User user);
     Card findById(Long id);
     Page<Card> searchCards(User user, CardStatus status, BigDecimal minBalance, BigDecimal maxBalance, Pageable pageable);
+    KeysetPage<Card> scrollCards(User user, CardStatus status, BigDecimal minBalance, BigDecimal maxBalance, String cursor, int size);
 }
@@ -3,4 +3,6 @@ package bank.testovoe.service;
 public interface EncryptionService {
     String encrypt(String plainText);
     String decrypt(String encryptedText);
+    byte[] encrypt(byte[] plain);
+    byte[] decrypt(byte[] encrypted);
 }
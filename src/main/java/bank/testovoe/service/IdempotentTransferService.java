@@ -0,0 +1,15 @@
+package bank.testovoe.service;
+
+import bank.testovoe.dto.transfer.TransferRequest;
+import bank.testovoe.dto.transfer.TransferResponse;
+import bank.testovoe.model.User;
+
+public interface IdempotentTransferService {
+
+    /**
+     * Executes the transfer at most once per user and {@code idempotencyKey}. A repeated key
+     * returns the response of the original transfer; a repeated key with a different request
+     * is rejected.
+     */
+    TransferResponse transfer(User user, String idempotencyKey, TransferRequest request);
+}
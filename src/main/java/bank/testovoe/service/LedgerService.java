@@ -0,0 +1,14 @@
+package bank.testovoe.service;
+
+import bank.testovoe.model.Transfer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface LedgerService {
+
+    void recordTransfers(List<Transfer> transfers);
+    void recordDeposit(Long cardId, BigDecimal amount, LocalDateTime at);
+    BigDecimal balanceAsOf(Long cardId, LocalDateTime asOf);
+}
@@ -1,10 +1,31 @@
 package bank.testovoe.service;
 
+import bank.testovoe.dto.KeysetPage;
+import bank.testovoe.dto.transfer.BulkTransferResult;
+import bank.testovoe.dto.transfer.TransferHistoryRow;
+import bank.testovoe.dto.transfer.TransferRequest;
 import bank.testovoe.model.Transfer;
 import bank.testovoe.model.User;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
 
 public interface TransferService {
         Transfer transfer(User user, String fromCardId, String toCardId, BigDecimal amount);
+
+        /**
+         * Applies all transfers in one transaction. A rejected item is reported in its result and
+         * the others still apply, unless {@code strict} is set, in which case the first rejection
+         * rolls the whole batch back.
+         */
+        List<BulkTransferResult> transferAll(User user, List<TransferRequest> requests, boolean strict);
+
+        /**
+         * Returns the user's transfers, newest first, optionally limited to one of their cards and
+         * to a {@code [from, to]} time range. {@code cursor} is the {@code nextCursor} of the
+         * previous page.
+         */
+        KeysetPage<TransferHistoryRow> getHistory(User user, Long cardId, LocalDateTime from, LocalDateTime to,
+                                                  String cursor, int size);
 }
@@ -1,52 +1,84 @@
 package bank.testovoe.service.impl;
 
+import bank.testovoe.config.security.LoginAttemptThrottle;
 import bank.testovoe.exception.ForbiddenOperationException;
-import bank.testovoe.exception.NotFoundException;
 import bank.testovoe.model.Role;
 import bank.testovoe.model.User;
 import bank.testovoe.service.AuthService;
 import bank.testovoe.service.JwtService;
 import bank.testovoe.service.UserService;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.util.Optional;
+import java.util.UUID;
+
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class AuthServiceImpl implements AuthService {
 
     private final UserService userService;
     private final PasswordEncoder passwordEncoder;
     private final JwtService jwtService;
+    private final MeterRegistry meterRegistry;
+    private final LoginAttemptThrottle loginAttemptThrottle;
+
+    /**
+     * Hash of a random password with the encoder's cost, checked against when the email is
+     * unknown so a failed lookup takes as long as a wrong password. Computed at startup: a lazy
+     * hash would make the first unknown-email login pay for two BCrypt rounds.
+     */
+    private final String dummyHash;
+
+    public AuthServiceImpl(UserService userService,
+                           PasswordEncoder passwordEncoder,
+                           JwtService jwtService,
+                           MeterRegistry meterRegistry,
+                           LoginAttemptThrottle loginAttemptThrottle) {
+        this.userService = userService;
+        this.passwordEncoder = passwordEncoder;
+        this.jwtService = jwtService;
+        this.meterRegistry = meterRegistry;
+        this.loginAttemptThrottle = loginAttemptThrottle;
+        this.dummyHash = passwordEncoder.encode(UUID.randomUUID().toString());
+    }
 
     @Override
-    public String login(String email, String password) {
+    public String login(String email, String password, String clientIp) {
         log.info("Login attempt for email: {}", email);
-        User user = userService.findByEmail(email)
-                .orElseThrow(() -> new NotFoundException("User not found with email: " + email));
+        loginAttemptThrottle.acquire(email, clientIp);
+        Optional<User> user = userService.findByEmail(email);
+        String hash = user.map(User::getPassword).orElse(dummyHash);
 
-        if (!passwordEncoder.matches(password, user.getPassword())) {
+        boolean matches = bcryptTimer("matches").record(() -> passwordEncoder.matches(password, hash));
+        if (user.isEmpty() || !matches) {
             throw new ForbiddenOperationException("Invalid email or password");
         }
 
-        return jwtService.generateToken(user);
+        return jwtService.generateToken(user.get());
     }
 
     @Override
-    public User register(String email, String password) {
+    public User register(String email, String password, String clientIp) {
         log.info("Registering new user with email: {}", email);
+        loginAttemptThrottle.acquire(email, clientIp);
         if (userService.existsByEmail(email)) {
             throw new ForbiddenOperationException("Email already in use");
         }
 
         User user = User.builder()
                 .email(email)
-                .password(passwordEncoder.encode(password))
+                .password(bcryptTimer("encode").record(() -> passwordEncoder.encode(password)))
                 .role(Role.USER)
                 .build();
 
         return userService.save(user);
     }
+
+    private Timer bcryptTimer(String operation) {
+        return meterRegistry.timer("bank.auth.bcrypt", "operation", operation);
+    }
 }
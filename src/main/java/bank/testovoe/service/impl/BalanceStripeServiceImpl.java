@@ -0,0 +1,158 @@
+package bank.testovoe.service.impl;
+
+import bank.testovoe.exception.BadRequestException;
+import bank.testovoe.exception.ForbiddenOperationException;
+import bank.testovoe.exception.NotFoundException;
+import bank.testovoe.model.Card;
+import bank.testovoe.repository.CardBalanceStripeRepository;
+import bank.testovoe.repository.CardBalanceStripeRepository.StripeBalance;
+import bank.testovoe.repository.CardRepository;
+import bank.testovoe.service.BalanceStripeService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Striped balances for hot cards. A striped card's balance is split across
+ * {@code card.balance_stripes} rows of {@code card_balance_stripe}: credits go to a free stripe
+ * and debits to stripes no other transaction holds, so concurrent transfers of one card mostly
+ * lock different rows. The card's balance is {@code card.balance} plus its stripes
+ * ({@link Card#EFFECTIVE_BALANCE}); deposits applied in batches and credits that find no free
+ * stripe land in {@code card.balance}.
+ * <p>
+ * Lock order: transfers and deposits only ever take stripes with {@code SKIP LOCKED}, so they
+ * never wait for a stripe, and they touch a card's stripes before its row. The only waits are
+ * therefore for card rows, which every path takes in ascending card id order, and demotion's wait
+ * for the stripes of one card, which it takes in stripe order before that card's row. No cycle of
+ * waits can form.
+ * <p>
+ * {@link #debit} and {@link #credit} leave to the caller whatever they could not place on
+ * stripes, so callers fall back to {@code card.balance}. That also covers a card that was
+ * promoted or demoted after the caller loaded it.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BalanceStripeServiceImpl implements BalanceStripeService {
+
+    static final int MAX_STRIPES = 64;
+
+    private final CardBalanceStripeRepository stripeRepository;
+    private final CardRepository cardRepository;
+
+    /**
+     * Takes the whole amount from one free stripe that covers it. Otherwise it locks every free
+     * funded stripe, and if those together with {@code reserve} cover the amount, drains them
+     * richest first and leaves the rest for {@code card.balance}.
+     *
+     * @param reserve what the caller can take from {@code card.balance}
+     * @return the part of {@code amount} the caller still has to take from {@code card.balance}:
+     * zero if the stripes covered it, {@code amount} if nothing was drawn because the card is not
+     * striped or not active, or its free stripes and {@code reserve} do not cover the amount
+     */
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public BigDecimal debit(Card card, BigDecimal amount, BigDecimal reserve) {
+        if (card.getBalanceStripes() == 0) {
+            return amount;
+        }
+        Integer covering = stripeRepository.lockCovering(card.getId(), amount);
+        if (covering != null) {
+            // Already locked by this transaction, so this only fails if the card is not active
+            return stripeRepository.debit(card.getId(), covering, amount) == 1 ? BigDecimal.ZERO : amount;
+        }
+
+        List<StripeBalance> funded = stripeRepository.lockFunded(card.getId());
+        BigDecimal available = funded.stream().map(StripeBalance::balance).reduce(reserve, BigDecimal::add);
+        if (available.compareTo(amount) < 0) {
+            return amount;
+        }
+        List<StripeBalance> drawn = new ArrayList<>();
+        BigDecimal remaining = amount;
+        for (StripeBalance stripe : funded) {
+            if (remaining.signum() == 0) {
+                break;
+            }
+            BigDecimal take = stripe.balance().min(remaining);
+            if (stripeRepository.debit(card.getId(), stripe.stripe(), take) == 0) {
+                // The card is no longer active; leave its balance as it was
+                drawn.forEach(draw -> stripeRepository.restore(card.getId(), draw.stripe(), draw.balance()));
+                return amount;
+            }
+            drawn.add(new StripeBalance(stripe.stripe(), take));
+            remaining = remaining.subtract(take);
+        }
+        return remaining;
+    }
+
+    /**
+     * Credits a free stripe, starting the search at a random one so concurrent credits spread out.
+     *
+     * @param deposit a deposit only requires the card not to be blocked, a transfer requires it
+     *                to be active
+     * @return {@code false} if the card is not striped, not in the required status or every stripe
+     * is held by another transaction
+     */
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean credit(Card card, BigDecimal amount, boolean deposit) {
+        int stripes = card.getBalanceStripes();
+        if (stripes == 0) {
+            return false;
+        }
+        Integer stripe = stripeRepository.lockFree(card.getId(), ThreadLocalRandom.current().nextInt(stripes), stripes);
+        return stripe != null && stripeRepository.credit(card.getId(), stripe, amount, deposit) == 1;
+    }
+
+    /**
+     * Moves the card's balance into the first of {@code stripes} new stripes.
+     */
+    @Override
+    @Transactional
+    public void stripe(Long cardId, int stripes) {
+        if (stripes < 2 || stripes > MAX_STRIPES) {
+            throw new BadRequestException("Number of stripes must be between 2 and " + MAX_STRIPES);
+        }
+        Card card = lock(cardId);
+        if (card.getBalanceStripes() > 0) {
+            throw new ForbiddenOperationException("Card balance already striped");
+        }
+        log.info("Striping balance of card {} across {} rows", cardId, stripes);
+        stripeRepository.create(cardId, stripes, card.getBalance());
+        card.setBalance(BigDecimal.ZERO);
+        card.setBalanceStripes(stripes);
+    }
+
+    /**
+     * Folds the stripes back into {@code card.balance} and deletes them. The stripes are locked
+     * before the card row, the order transfers take them in, so this waits for transactions that
+     * hold a stripe; a transfer that loaded the card before the change misses the stripes it
+     * expected and falls back to {@code card.balance}.
+     */
+    @Override
+    @Transactional
+    public void unstripe(Long cardId) {
+        BigDecimal striped = stripeRepository.lockAll(cardId).stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+        Card card = lock(cardId);
+        if (card.getBalanceStripes() == 0) {
+            throw new ForbiddenOperationException("Card balance is not striped");
+        }
+        log.info("Folding {} balance stripes of card {}", card.getBalanceStripes(), cardId);
+        stripeRepository.deleteAll(cardId);
+        card.setBalance(card.getBalance().add(striped));
+        card.setBalanceStripes(0);
+    }
+
+    private Card lock(Long cardId) {
+        return cardRepository.findAllByIdForUpdate(List.of(cardId)).stream()
+                .findFirst()
+                .orElseThrow(() -> new NotFoundException("Card not found"));
+    }
+}
@@ -0,0 +1,243 @@
+package bank.testovoe.service.impl;
+
+import bank.testovoe.config.CardCache;
+import bank.testovoe.dto.card.CardIssuanceResult;
+import bank.testovoe.job.CardBackfillJob;
+import bank.testovoe.repository.CardIssuanceRepository;
+import bank.testovoe.repository.CardIssuanceRepository.NewCard;
+import bank.testovoe.service.CardIssuanceService;
+import bank.testovoe.service.CardNumberHashService;
+import bank.testovoe.service.EncryptionService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Issues cards from a CSV of {@code userId,cardNumber,expiryDate} lines, reading it line by line
+ * and working in chunks of {@code cards.issuance.chunk-size}, so memory use does not depend on the
+ * file size. Per chunk, card numbers are encrypted and hashed in parallel, owners and duplicates
+ * are checked with one query each, and the new cards are inserted in one JDBC batch and one
+ * transaction. Every line gets a result, reported once its chunk is done.
+ */
+@Slf4j
+@Service
+public class CardIssuanceServiceImpl implements CardIssuanceService {
+
+    private static final Pattern CARD_NUMBER = Pattern.compile("\\d{16}");
+
+    private final CardIssuanceRepository cardIssuanceRepository;
+    private final EncryptionService encryptionService;
+    private final CardNumberHashService cardNumberHashService;
+    private final CardBackfillJob cardBackfillJob;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int chunkSize;
+
+    public CardIssuanceServiceImpl(CardIssuanceRepository cardIssuanceRepository,
+                                   EncryptionService encryptionService,
+                                   CardNumberHashService cardNumberHashService,
+                                   CardBackfillJob cardBackfillJob,
+                                   TransactionTemplate transactionTemplate,
+                                   ApplicationEventPublisher eventPublisher,
+                                   @Value("${cards.issuance.chunk-size:500}") int chunkSize) {
+        this.cardIssuanceRepository = cardIssuanceRepository;
+        this.encryptionService = encryptionService;
+        this.cardNumberHashService = cardNumberHashService;
+        this.cardBackfillJob = cardBackfillJob;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public void issue(Reader csv, Consumer<CardIssuanceResult> report) throws IOException {
+        BufferedReader reader = csv instanceof BufferedReader buffered ? buffered : new BufferedReader(csv);
+        List<Row> chunk = new ArrayList<>(chunkSize);
+        LocalDate today = LocalDate.now();
+        long lineNumber = 0;
+        long created = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || lineNumber == 1 && line.toLowerCase().startsWith("userid")) {
+                continue;
+            }
+            chunk.add(parse(lineNumber, line, today));
+            if (chunk.size() == chunkSize) {
+                created += issueChunk(chunk, report);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            created += issueChunk(chunk, report);
+        }
+        log.info("Bulk issuance: {} cards created from {} lines", created, lineNumber);
+    }
+
+    private static Row parse(long line, String text, LocalDate today) {
+        String[] fields = text.split(",", -1);
+        if (fields.length != 3) {
+            return Row.invalid(line, "Expected userId,cardNumber,expiryDate");
+        }
+        long userId;
+        try {
+            userId = Long.parseLong(fields[0].trim());
+        } catch (NumberFormatException e) {
+            return Row.invalid(line, "Invalid user id");
+        }
+        String cardNumber = fields[1].trim();
+        if (!CARD_NUMBER.matcher(cardNumber).matches()) {
+            return Row.invalid(line, "Card number must be 16 digits");
+        }
+        LocalDate expiryDate;
+        try {
+            expiryDate = LocalDate.parse(fields[2].trim());
+        } catch (DateTimeParseException e) {
+            return Row.invalid(line, "Expiry date must be yyyy-MM-dd");
+        }
+        if (expiryDate.isBefore(today)) {
+            return Row.invalid(line, "Expiry date is in the past");
+        }
+        return new Row(line, userId, cardNumber, expiryDate, null);
+    }
+
+    /**
+     * @return the number of cards created
+     */
+    private int issueChunk(List<Row> rows, Consumer<CardIssuanceResult> report) {
+        List<Prepared> prepared = rows.parallelStream()
+                .filter(row -> row.error() == null)
+                .map(row -> new Prepared(row,
+                        encryptionService.encrypt(row.cardNumber()),
+                        cardNumberHashService.hash(row.cardNumber())))
+                .toList();
+
+        Set<Long> users = Set.of();
+        Set<ByteBuffer> existing = Set.of();
+        Set<String> existingLegacy = Set.of();
+        if (!prepared.isEmpty()) {
+            users = cardIssuanceRepository.findExistingUserIds(
+                    prepared.stream().map(card -> card.row().userId()).distinct().toList());
+            existing = cardIssuanceRepository.findExistingHashes(prepared.stream().map(Prepared::hash).toList());
+            if (!cardBackfillJob.isComplete()) {
+                existingLegacy = cardIssuanceRepository.findExistingEncrypted(
+                        prepared.stream().map(Prepared::encrypted).toList());
+            }
+        }
+
+        List<CardIssuanceResult> results = new ArrayList<>(rows.size());
+        List<Prepared> accepted = new ArrayList<>(prepared.size());
+        Set<ByteBuffer> seen = new HashSet<>();
+        int next = 0;
+        for (Row row : rows) {
+            if (row.error() != null) {
+                results.add(CardIssuanceResult.failed(row.line(), row.error()));
+                continue;
+            }
+            Prepared card = prepared.get(next++);
+            ByteBuffer hash = ByteBuffer.wrap(card.hash());
+            if (!users.contains(row.userId())) {
+                results.add(CardIssuanceResult.failed(row.line(), "User not found"));
+            } else if (existing.contains(hash) || existingLegacy.contains(card.encrypted())) {
+                results.add(CardIssuanceResult.failed(row.line(), "Card already exists"));
+            } else if (!seen.add(hash)) {
+                results.add(CardIssuanceResult.failed(row.line(), "Duplicate card number in file"));
+            } else {
+                results.add(null);
+                accepted.add(card);
+            }
+        }
+
+        List<Long> ids = cardIssuanceRepository.nextIds(accepted.size());
+        List<NewCard> cards = new ArrayList<>(accepted.size());
+        for (int i = 0; i < accepted.size(); i++) {
+            Prepared card = accepted.get(i);
+            String cardNumber = card.row().cardNumber();
+            cards.add(new NewCard(ids.get(i), card.row().userId(), card.encrypted(), card.hash(),
+                    cardNumber.substring(cardNumber.length() - 4), card.row().expiryDate()));
+        }
+        Set<Long> failed = insert(cards);
+
+        int created = 0;
+        int card = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            CardIssuanceResult result = results.get(i);
+            if (result == null) {
+                NewCard issued = cards.get(card++);
+                if (failed.contains(issued.id())) {
+                    result = CardIssuanceResult.failed(rows.get(i).line(), "Card already exists");
+                } else {
+                    result = CardIssuanceResult.created(rows.get(i).line(), issued.id());
+                    created++;
+                }
+            }
+            report.accept(result);
+        }
+        return created;
+    }
+
+    /**
+     * Inserts the chunk in one batch. If a concurrent request created one of its card numbers in
+     * the meantime, the batch is retried card by card.
+     *
+     * @return the ids of cards that could not be inserted
+     */
+    private Set<Long> insert(List<NewCard> cards) {
+        if (cards.isEmpty()) {
+            return Set.of();
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                cardIssuanceRepository.insertAll(cards);
+                publishCardsChanged(cards);
+            });
+            return Set.of();
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Bulk issuance chunk conflicts with existing cards, inserting card by card");
+        }
+        Set<Long> failed = new HashSet<>();
+        for (NewCard card : cards) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    cardIssuanceRepository.insertAll(List.of(card));
+                    publishCardsChanged(List.of(card));
+                });
+            } catch (DataIntegrityViolationException e) {
+                failed.add(card.id());
+            }
+        }
+        return failed;
+    }
+
+    private void publishCardsChanged(List<NewCard> cards) {
+        cards.stream()
+                .map(NewCard::ownerId)
+                .distinct()
+                .forEach(ownerId -> eventPublisher.publishEvent(new CardCache.CardsChanged(ownerId)));
+    }
+
+    private record Row(long line, Long userId, String cardNumber, LocalDate expiryDate, String error) {
+        static Row invalid(long line, String error) {
+            return new Row(line, null, null, null, error);
+        }
+    }
+
+    private record Prepared(Row row, String encrypted, byte[] hash) {
+    }
+}
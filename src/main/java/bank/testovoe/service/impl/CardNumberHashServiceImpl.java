@@ -0,0 +1,47 @@
+package bank.testovoe.service.impl;
+
+import bank.testovoe.exception.EncryptionException;
+import bank.testovoe.service.CardNumberHashService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Blind index for card numbers: a keyed HMAC-SHA256 of the PAN. It is deterministic, so it can be
+ * looked up through a unique index, while the stored ciphertext is free to use randomized
+ * encryption. The key must differ from the encryption key in production.
+ */
+@Service
+public class CardNumberHashServiceImpl implements CardNumberHashService {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec secretKey;
+    private final Queue<Mac> macs = new ConcurrentLinkedQueue<>();
+
+    public CardNumberHashServiceImpl(@Value("${encryption.hash-secret}") String secret) {
+        this.secretKey = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+    }
+
+    @Override
+    public byte[] hash(String cardNumber) {
+        Mac mac = macs.poll();
+        try {
+            if (mac == null) {
+                mac = Mac.getInstance(ALGORITHM);
+                mac.init(secretKey);
+            }
+            byte[] hash = mac.doFinal(cardNumber.getBytes(StandardCharsets.US_ASCII));
+            macs.offer(mac);
+            return hash;
+        } catch (GeneralSecurityException e) {
+            throw new EncryptionException("Failed to hash card number", e);
+        }
+    }
+}
@@ -1,25 +1,41 @@
 package bank.testovoe.service.impl;
 
+import bank.testovoe.config.CardCache;
+import bank.testovoe.config.CardCountCache;
 import bank.testovoe.config.CardSpecification;
+import bank.testovoe.dto.KeysetCursor;
+import bank.testovoe.dto.KeysetPage;
+import bank.testovoe.dto.card.CardSummary;
 import bank.testovoe.exception.ForbiddenOperationException;
 import bank.testovoe.exception.NotFoundException;
+import bank.testovoe.job.CardBackfillJob;
 import bank.testovoe.model.Card;
 import bank.testovoe.model.CardStatus;
-import bank.testovoe.model.Role;
+import bank.testovoe.model.DepositIntake;
+import bank.testovoe.model.DepositStatus;
 import bank.testovoe.model.User;
 import bank.testovoe.repository.CardRepository;
+import bank.testovoe.repository.DepositIntakeRepository;
+import bank.testovoe.service.BalanceStripeService;
+import bank.testovoe.service.CardNumberHashService;
 import bank.testovoe.service.CardService;
 import bank.testovoe.service.EncryptionService;
+import bank.testovoe.service.LedgerService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -28,15 +44,26 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class CardServiceImpl implements CardService {
 
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Direction.DESC, "createdAt", "id");
+
     private final CardRepository cardRepository;
     private final EncryptionService encryptionService;
+    private final CardNumberHashService cardNumberHashService;
+    private final CardBackfillJob cardBackfillJob;
+    private final CardCountCache cardCountCache;
+    private final LedgerService ledgerService;
+    private final BalanceStripeService balanceStripeService;
+    private final DepositIntakeRepository depositIntakeRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
-    public List<Card> getCardsForUser(User user) {
-        if (user.getRole() == Role.ADMIN) {
-            return cardRepository.findAll();
-        }
-        return cardRepository.findByOwner(user);
+    public List<CardSummary> getCardsForUser(User user) {
+        return cardRepository.findSummariesByOwner(user);
+    }
+
+    @Override
+    public List<CardSummary> getAllCards(Long afterId, int limit) {
+        return cardRepository.findSummariesAfterId(afterId == null ? 0L : afterId, Limit.of(limit));
     }
 
     @Override
@@ -49,27 +76,32 @@ public class CardServiceImpl implements CardService {
     @Transactional
     public Card createCard(User owner, String cardNumber, LocalDate expiryDate) {
         log.info("Creating card for user {} with expiry {}", owner.getEmail(), expiryDate);
+        byte[] hash = cardNumberHashService.hash(cardNumber);
         String encrypted = encryptionService.encrypt(cardNumber);
 
-        if (cardRepository.existsByEncryptedCardNumber(encrypted)) {
+        if (cardRepository.existsByCardNumberHash(hash)
+                || !cardBackfillJob.isComplete() && cardRepository.existsByEncryptedCardNumber(encrypted)) {
             throw new ForbiddenOperationException("Card already exists");
         }
 
         Card card = Card.builder()
                 .owner(owner)
                 .encryptedCardNumber(encrypted)
+                .cardNumberHash(hash)
+                .last4(cardNumber.substring(cardNumber.length() - 4))
                 .expiryDate(expiryDate)
                 .status(CardStatus.ACTIVE)
                 .balance(BigDecimal.ZERO)
                 .build();
-        return cardRepository.save(card);
+        Card saved = cardRepository.save(card);
+        eventPublisher.publishEvent(new CardCache.CardsChanged(owner.getId()));
+        return saved;
     }
 
     @Override
     @Transactional
     public void blockCard(String cardNumber, User user) {
-        String encrypted = encryptionService.encrypt(cardNumber);
-        Card card = cardRepository.findByEncryptedCardNumberAndOwner(encrypted, user)
+        Card card = findOwnedCard(cardNumber, user)
                 .orElseThrow(() -> new NotFoundException("Card not found or access denied"));
 
         if (card.getStatus() == CardStatus.BLOCKED) {
@@ -78,16 +110,17 @@ public class CardServiceImpl implements CardService {
 
         card.setStatus(CardStatus.BLOCKED);
         cardRepository.save(card);
+        eventPublisher.publishEvent(new CardCache.CardsChanged(user.getId()));
     }
 
     @Override
     @Transactional
     public void blockAnyCard(String cardNumber) {
-        String encrypted = encryptionService.encrypt(cardNumber);
-        Card card = cardRepository.findByEncryptedCardNumber(encrypted)
+        Card card = findCard(cardNumber)
                 .orElseThrow(() -> new NotFoundException("Card not found"));
 
-        log.info("Admin requested to block card: {}, owned by: {}", cardNumber, card.getOwner().getEmail());
+        // the owner is a lazy proxy; reading its id does not load the user
+        log.info("Admin requested to block card: {}, owned by user {}", cardNumber, card.getOwner().getId());
 
         if (card.getStatus() == CardStatus.BLOCKED) {
             throw new ForbiddenOperationException("Card already blocked");
@@ -95,45 +128,92 @@ public class CardServiceImpl implements CardService {
 
         card.setStatus(CardStatus.BLOCKED);
         cardRepository.save(card);
+        eventPublisher.publishEvent(new CardCache.CardsChanged(card.getOwner().getId()));
     }
 
     @Override
     @Transactional
     public void activateCardByNumber(String cardNumber) {
          log.info("Activating card with number {}", cardNumber);
-         String encrypted = encryptionService.encrypt(cardNumber);
-         Card card = cardRepository.findByEncryptedCardNumber(encrypted)
+         Card card = findCard(cardNumber)
                  .orElseThrow(() -> new NotFoundException("Card not found with number: " + cardNumber));
          if(card.getStatus() == CardStatus.ACTIVE) {
              throw new ForbiddenOperationException("Card already active");
          }
          card.setStatus(CardStatus.ACTIVE);
         cardRepository.save(card);
+        eventPublisher.publishEvent(new CardCache.CardsChanged(card.getOwner().getId()));
     }
 
     @Override
     @Transactional
     public void deleteCard(String cardNumber) {
         log.warn("Deleting card {}", cardNumber);
-        String encrypted = encryptionService.encrypt(cardNumber);
-
-        Card card = cardRepository.findByEncryptedCardNumber(encrypted)
+        Card card = findCard(cardNumber)
                 .orElseThrow(() -> new NotFoundException("Card not found"));
         cardRepository.delete(card);
+        eventPublisher.publishEvent(new CardCache.CardsChanged(card.getOwner().getId()));
     }
 
     @Override
     @Transactional
     public void deposit(String cardNumber, BigDecimal amount, User user) {
+        Card card = findOwnedCard(cardNumber, user)
+                .orElseThrow(() -> new NotFoundException("Card not found or does not belong to user"));
+        if (card.getStatus() == CardStatus.BLOCKED) {
+            throw new ForbiddenOperationException("Card already blocked");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (!balanceStripeService.credit(card, amount, true) && cardRepository.deposit(card.getId(), amount, now) == 0) {
+            throw new ForbiddenOperationException("Card already blocked");
+        }
+        ledgerService.recordDeposit(card.getId(), amount, now);
+        eventPublisher.publishEvent(new CardCache.CardsChanged(user.getId()));
+    }
 
-        String encrypted = encryptionService.encrypt(cardNumber);
-        Card card = cardRepository.findByEncryptedCardNumberAndOwner(encrypted, user)
+    /**
+     * Validates the card and queues the deposit; {@link bank.testovoe.job.DepositBatchJob} applies
+     * it together with the card's other pending deposits. A burst of top-ups to one card costs an
+     * INSERT each instead of queueing on the card's row lock.
+     */
+    @Override
+    @Transactional
+    public DepositIntake submitDeposit(String cardNumber, BigDecimal amount, User user) {
+        Card card = findOwnedCard(cardNumber, user)
                 .orElseThrow(() -> new NotFoundException("Card not found or does not belong to user"));
         if (card.getStatus() == CardStatus.BLOCKED) {
             throw new ForbiddenOperationException("Card already blocked");
         }
-        card.setBalance(card.getBalance().add(amount));
-        cardRepository.save(card);
+        return depositIntakeRepository.save(DepositIntake.builder()
+                .cardId(card.getId())
+                .ownerId(user.getId())
+                .amount(amount)
+                .status(DepositStatus.PENDING)
+                .build());
+    }
+
+    @Override
+    public DepositIntake getDeposit(Long id, User user) {
+        return depositIntakeRepository.findByIdAndOwnerId(id, user.getId())
+                .orElseThrow(() -> new NotFoundException("Deposit not found"));
+    }
+
+    /**
+     * Looks a card up by its blind index. Cards not yet reached by {@link CardBackfillJob}
+     * have no hash, so until it completes a miss falls back to the deterministic ciphertext.
+     */
+    private Optional<Card> findCard(String cardNumber) {
+        return cardRepository.findByCardNumberHash(cardNumberHashService.hash(cardNumber))
+                .or(() -> cardBackfillJob.isComplete()
+                        ? Optional.empty()
+                        : cardRepository.findByEncryptedCardNumber(encryptionService.encrypt(cardNumber)));
+    }
+
+    private Optional<Card> findOwnedCard(String cardNumber, User user) {
+        return cardRepository.findByCardNumberHashAndOwner(cardNumberHashService.hash(cardNumber), user)
+                .or(() -> cardBackfillJob.isComplete()
+                        ? Optional.empty()
+                        : cardRepository.findByEncryptedCardNumberAndOwner(encryptionService.encrypt(cardNumber), user));
     }
 
     @Override
@@ -142,20 +222,51 @@ public class CardServiceImpl implements CardService {
                 .orElseThrow(() -> new NotFoundException("Card not found with id: " + id));
     }
 
+    /**
+     * Offset paging for clients that show totals. The total comes from {@link CardCountCache}
+     * and is not queried at all when the page itself shows where the result ends.
+     */
+    @Override
     public Page<Card> searchCards(User user, CardStatus status, BigDecimal minBalance, BigDecimal maxBalance, Pageable pageable) {
-    Specification<Card> spec = Specification.where(CardSpecification.ownerIs(user));
-
-    if (status != null) {
-        spec = spec.and(CardSpecification.statusIs(status));
-    }
-    if (minBalance != null) {
-        spec = spec.and(CardSpecification.balanceGreaterThanOrEqual(minBalance));
+        Specification<Card> spec = searchSpec(user, status, minBalance, maxBalance);
+        List<Card> content = cardRepository.findPageContent(spec, pageable);
+        return PageableExecutionUtils.getPage(content, pageable,
+                () -> cardCountCache.get(user.getId(), status, minBalance, maxBalance, () -> cardRepository.count(spec)));
     }
-    if (maxBalance != null) {
-        spec = spec.and(CardSpecification.balanceLessThanOrEqual(maxBalance));
+
+    /**
+     * Newest-first keyset scrolling on {@code (createdAt, id)}: no count, and every page is a
+     * range scan no matter how deep the client has scrolled.
+     */
+    @Override
+    public KeysetPage<Card> scrollCards(User user, CardStatus status, BigDecimal minBalance, BigDecimal maxBalance,
+                                        String cursor, int size) {
+        Specification<Card> spec = searchSpec(user, status, minBalance, maxBalance);
+        if (cursor != null) {
+            KeysetCursor position = KeysetCursor.decode(cursor);
+            spec = spec.and(CardSpecification.createdBefore(position.timestamp(), position.id()));
+        }
+        List<Card> cards = cardRepository.findBy(spec, query -> query.sortBy(NEWEST_FIRST).limit(size + 1).all());
+        if (cards.size() <= size) {
+            return KeysetPage.of(cards, null);
+        }
+        List<Card> content = cards.subList(0, size);
+        Card last = content.get(size - 1);
+        return KeysetPage.of(content, new KeysetCursor(last.getCreatedAt(), last.getId()).encode());
     }
 
-    return cardRepository.findAll(spec, pageable);
-}
+    private static Specification<Card> searchSpec(User user, CardStatus status, BigDecimal minBalance, BigDecimal maxBalance) {
+        Specification<Card> spec = Specification.where(CardSpecification.ownerIs(user));
 
+        if (status != null) {
+            spec = spec.and(CardSpecification.statusIs(status));
+        }
+        if (minBalance != null) {
+            spec = spec.and(CardSpecification.balanceGreaterThanOrEqual(minBalance));
+        }
+        if (maxBalance != null) {
+            spec = spec.and(CardSpecification.balanceLessThanOrEqual(maxBalance));
+        }
+        return spec;
+    }
 }
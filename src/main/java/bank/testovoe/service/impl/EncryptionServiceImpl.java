@@ -2,7 +2,8 @@ package bank.testovoe.service.impl;
 
 import bank.testovoe.exception.EncryptionException;
 import bank.testovoe.service.EncryptionService;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -10,8 +11,12 @@ import org.springframework.stereotype.Service;
 import javax.crypto.Cipher;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Service
@@ -20,37 +25,77 @@ public class EncryptionServiceImpl implements EncryptionService {
     private static final String ALGORITHM = "AES";
 
     private final SecretKeySpec secretKey;
+    private final Timer encryptTimer;
+    private final Timer decryptTimer;
 
-    public EncryptionServiceImpl(@Value("${encryption.secret}") String secret) {
+    /**
+     * Initialized ciphers are reused instead of paying for a provider lookup and key schedule on
+     * every call. A pool rather than a ThreadLocal keeps reuse effective on virtual threads, and
+     * it never grows beyond the peak number of concurrent callers.
+     */
+    private final Queue<Cipher> encryptCiphers = new ConcurrentLinkedQueue<>();
+    private final Queue<Cipher> decryptCiphers = new ConcurrentLinkedQueue<>();
+
+    public EncryptionServiceImpl(@Value("${encryption.secret}") String secret, MeterRegistry meterRegistry) {
         byte[] key = Arrays.copyOf(secret.getBytes(StandardCharsets.UTF_8), 16);
         this.secretKey = new SecretKeySpec(key, ALGORITHM);
+        this.encryptTimer = meterRegistry.timer("bank.crypto", "operation", "encrypt");
+        this.decryptTimer = meterRegistry.timer("bank.crypto", "operation", "decrypt");
     }
 
     @Override
     public String encrypt(String plainText) {
+        byte[] encrypted = encrypt(plainText.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(encrypted);
+    }
+
+    @Override
+    public String decrypt(String encryptedText) {
+        log.debug("Trying to decrypt: {}", encryptedText);
+        byte[] decoded;
+        try {
+            decoded = Base64.getDecoder().decode(encryptedText);
+        } catch (IllegalArgumentException e) {
+            log.error("Decryption failed", e);
+            throw new EncryptionException("Failed to decrypt", e);
+        }
+        return new String(decrypt(decoded), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public byte[] encrypt(byte[] plain) {
+        long start = System.nanoTime();
         try {
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey);
-            byte[] encrypted = cipher.doFinal(plainText.getBytes(StandardCharsets.UTF_8));
-            return Base64.getEncoder().encodeToString(encrypted);
-        } catch (Exception e) {
+            return doFinal(encryptCiphers, Cipher.ENCRYPT_MODE, plain);
+        } catch (GeneralSecurityException e) {
             throw new EncryptionException("Failed to encrypt", e);
+        } finally {
+            encryptTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
     }
 
     @Override
-    public String decrypt(String encryptedText) {
+    public byte[] decrypt(byte[] encrypted) {
+        long start = System.nanoTime();
         try {
-            log.debug("Trying to decrypt: {}", encryptedText);
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.DECRYPT_MODE, secretKey);
-            byte[] decoded = Base64.getDecoder().decode(encryptedText);
-            byte[] decrypted = cipher.doFinal(decoded);
-            return new String(decrypted, StandardCharsets.UTF_8);
-        } catch (Exception e) {
-             log.error("Decryption failed", e);
+            return doFinal(decryptCiphers, Cipher.DECRYPT_MODE, encrypted);
+        } catch (GeneralSecurityException e) {
+            log.error("Decryption failed", e);
             throw new EncryptionException("Failed to decrypt", e);
+        } finally {
+            decryptTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
     }
-}
 
+    private byte[] doFinal(Queue<Cipher> pool, int mode, byte[] input) throws GeneralSecurityException {
+        Cipher cipher = pool.poll();
+        if (cipher == null) {
+            cipher = Cipher.getInstance(ALGORITHM);
+            cipher.init(mode, secretKey);
+        }
+        // doFinal resets the cipher to its initialized state; a cipher that threw is not returned
+        byte[] output = cipher.doFinal(input);
+        pool.offer(cipher);
+        return output;
+    }
+}
@@ -0,0 +1,175 @@
+package bank.testovoe.service.impl;
+
+import bank.testovoe.dto.transfer.TransferRequest;
+import bank.testovoe.dto.transfer.TransferResponse;
+import bank.testovoe.exception.BadRequestException;
+import bank.testovoe.exception.ConflictException;
+import bank.testovoe.mapper.TransferMapper;
+import bank.testovoe.model.IdempotencyKey;
+import bank.testovoe.model.Transfer;
+import bank.testovoe.model.User;
+import bank.testovoe.repository.IdempotencyKeyRepository;
+import bank.testovoe.repository.TransferRepository;
+import bank.testovoe.service.CardNumberHashService;
+import bank.testovoe.service.IdempotentTransferService;
+import bank.testovoe.service.TransferService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Deduplicates transfers by {@code Idempotency-Key} in two layers:
+ * <ul>
+ *     <li>an in-memory map of futures: the first request for a key executes, concurrent and later
+ *     duplicates on this node wait for (or reuse) its outcome without touching the database;</li>
+ *     <li>the {@code idempotency_key} table with a unique {@code (user_id, idempotency_key)}
+ *     constraint: the key row is inserted before the transfer in the same transaction, so a
+ *     duplicate on another node blocks on the unique index until the first commits, then fails
+ *     and replays the stored transfer.</li>
+ * </ul>
+ * Failed transfers are not recorded, so retrying them executes the transfer again.
+ */
+@Slf4j
+@Service
+public class IdempotentTransferServiceImpl implements IdempotentTransferService {
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final TransferService transferService;
+    private final TransferRepository transferRepository;
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final CardNumberHashService cardNumberHashService;
+    private final TransferMapper transferMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration waitTimeout;
+    private final Cache<RequestKey, CompletableFuture<Outcome>> outcomes;
+
+    public IdempotentTransferServiceImpl(TransferService transferService,
+                                         TransferRepository transferRepository,
+                                         IdempotencyKeyRepository idempotencyKeyRepository,
+                                         CardNumberHashService cardNumberHashService,
+                                         TransferMapper transferMapper,
+                                         TransactionTemplate transactionTemplate,
+                                         @Value("${idempotency.wait-timeout:30s}") Duration waitTimeout,
+                                         @Value("${idempotency.cache.ttl:10m}") Duration cacheTtl,
+                                         @Value("${idempotency.cache.max-size:100000}") long cacheMaxSize) {
+        this.transferService = transferService;
+        this.transferRepository = transferRepository;
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.cardNumberHashService = cardNumberHashService;
+        this.transferMapper = transferMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.waitTimeout = waitTimeout;
+        this.outcomes = Caffeine.newBuilder()
+                .expireAfterWrite(cacheTtl)
+                .maximumSize(cacheMaxSize)
+                .build();
+    }
+
+    @Override
+    public TransferResponse transfer(User user, String idempotencyKey, TransferRequest request) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        byte[] requestHash = requestHash(request);
+        RequestKey key = new RequestKey(user.getId(), idempotencyKey);
+
+        CompletableFuture<Outcome> own = new CompletableFuture<>();
+        CompletableFuture<Outcome> existing = outcomes.asMap().putIfAbsent(key, own);
+        if (existing != null) {
+            log.info("Duplicate transfer request for key {} of user {}", idempotencyKey, user.getId());
+            return await(existing).responseFor(requestHash);
+        }
+
+        try {
+            Outcome outcome = execute(user, idempotencyKey, requestHash, request);
+            own.complete(outcome);
+            return outcome.responseFor(requestHash);
+        } catch (RuntimeException e) {
+            outcomes.asMap().remove(key, own);
+            own.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private Outcome execute(User user, String idempotencyKey, byte[] requestHash, TransferRequest request) {
+        var stored = idempotencyKeyRepository.findByUserIdAndIdempotencyKey(user.getId(), idempotencyKey);
+        if (stored.isPresent()) {
+            return replay(stored.get());
+        }
+        try {
+            return transactionTemplate.execute(status -> {
+                IdempotencyKey record = idempotencyKeyRepository.saveAndFlush(IdempotencyKey.builder()
+                        .userId(user.getId())
+                        .idempotencyKey(idempotencyKey)
+                        .requestHash(requestHash)
+                        .build());
+                Transfer transfer = transferService.transfer(
+                        user, request.fromCardNumber(), request.toCardNumber(), request.amount());
+                record.setTransferId(transfer.getId());
+                return new Outcome(requestHash, transferMapper.toDto(transfer));
+            });
+        } catch (DataIntegrityViolationException e) {
+            log.info("Transfer for key {} of user {} was committed concurrently", idempotencyKey, user.getId());
+            return idempotencyKeyRepository.findByUserIdAndIdempotencyKey(user.getId(), idempotencyKey)
+                    .map(this::replay)
+                    .orElseThrow(() -> e);
+        }
+    }
+
+    private Outcome replay(IdempotencyKey record) {
+        TransferResponse response = transferRepository.findHistoryRowById(record.getTransferId())
+                .map(transferMapper::toDto)
+                .orElseThrow(() -> new ConflictException("Transfer for this Idempotency-Key no longer exists"));
+        return new Outcome(record.getRequestHash(), response);
+    }
+
+    private Outcome await(CompletableFuture<Outcome> outcome) {
+        try {
+            return outcome.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new ConflictException("A request with this Idempotency-Key is still in progress");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConflictException("A request with this Idempotency-Key is still in progress");
+        }
+    }
+
+    /**
+     * Keyed hash of the request body, so a reused key with a different body is detected without
+     * storing card numbers.
+     */
+    private byte[] requestHash(TransferRequest request) {
+        return cardNumberHashService.hash(request.fromCardNumber() + '|' + request.toCardNumber() + '|'
+                + request.amount().stripTrailingZeros().toPlainString());
+    }
+
+    private record RequestKey(Long userId, String idempotencyKey) {
+    }
+
+    private record Outcome(byte[] requestHash, TransferResponse response) {
+
+        TransferResponse responseFor(byte[] requestHash) {
+            if (!Arrays.equals(this.requestHash, requestHash)) {
+                throw new ConflictException("Idempotency-Key was already used for a different request");
+            }
+            return response;
+        }
+    }
+}
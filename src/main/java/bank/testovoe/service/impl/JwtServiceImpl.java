@@ -1,70 +1,132 @@
 package bank.testovoe.service.impl;
 
+import bank.testovoe.dto.auth.TokenClaims;
 import bank.testovoe.exception.JwtAuthenticationException;
+import bank.testovoe.model.Role;
 import bank.testovoe.model.User;
 import bank.testovoe.service.JwtService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
-import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
 
 @Slf4j
 @Service
 public class JwtServiceImpl implements JwtService {
 
-    @Value("${jwt.secret}")
-    private String secret;
+    private static final long JWT_TOKEN_VALIDITY = 24 * 60 * 60 * 1000;
+    private static final String ROLE_CLAIM = "role";
+    private static final String USER_ID_CLAIM = "uid";
 
-    @PostConstruct
-    public void init() {
-        log.info("JWT Secret: {}", secret);
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    private final Key signingKey;
+    private final JwtParser parser;
+
+    /**
+     * Verified claims keyed by the SHA-256 of the token, so a token is signature-checked once
+     * and then served from memory until it expires. Raw tokens are never kept as keys.
+     */
+    private final Cache<String, TokenClaims> verifiedTokens;
+
+    public JwtServiceImpl(@Value("${jwt.secret}") String secret,
+                          @Value("${jwt.cache.max-size:100000}") long cacheMaxSize) {
+        this.signingKey = Keys.hmacShaKeyFor(secret.getBytes());
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfter(new Expiry<String, TokenClaims>() {
+                    @Override
+                    public long expireAfterCreate(String key, TokenClaims claims, long currentTime) {
+                        return Math.max(0, Duration.between(Instant.now(), claims.expiresAt()).toNanos());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, TokenClaims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, TokenClaims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
     }
 
     @Override
     public String generateToken(User user) {
-        long JWT_TOKEN_VALIDITY = 24 * 60 * 60 * 1000;
         return Jwts.builder()
                 .setSubject(user.getEmail())
-                .claim("role", user.getRole().name())
+                .claim(USER_ID_CLAIM, user.getId())
+                .claim(ROLE_CLAIM, user.getRole().name())
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + JWT_TOKEN_VALIDITY))
-                .signWith(Keys.hmacShaKeyFor(secret.getBytes()), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
     @Override
-    public String extractUsername(String token) {
-        return parseToken(token).getSubject();
-    }
+    public TokenClaims parseToken(String token) {
+        String key = hash(token);
+        TokenClaims cached = verifiedTokens.getIfPresent(key);
+        if (cached != null && cached.expiresAt().isAfter(Instant.now())) {
+            return cached;
+        }
 
-    @Override
-    public boolean isTokenValid(String token, User user) {
-        return extractUsername(token).equals(user.getEmail()) && !isTokenExpired(token);
+        TokenClaims claims = verify(token);
+        verifiedTokens.put(key, claims);
+        return claims;
     }
 
-    private Claims parseToken(String token) {
+    private TokenClaims verify(String token) {
         try {
-            return Jwts.parserBuilder()
-                    .setSigningKey(secret.getBytes())
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            String role = claims.get(ROLE_CLAIM, String.class);
+            if (role == null || claims.getExpiration() == null) {
+                throw new JwtAuthenticationException("Invalid token");
+            }
+            return new TokenClaims(
+                    claims.get(USER_ID_CLAIM, Long.class),
+                    claims.getSubject(),
+                    Role.valueOf(role),
+                    claims.getExpiration().toInstant()
+            );
         } catch (ExpiredJwtException e) {
             throw new JwtAuthenticationException("Token expired", e);
-        } catch (JwtException e) {
+        } catch (JwtException | IllegalArgumentException e) {
             throw new JwtAuthenticationException("Invalid token", e);
         }
     }
 
-    private boolean isTokenExpired(String token) {
-        return parseToken(token).getExpiration().before(new Date());
+    private static String hash(String token) {
+        byte[] digest = SHA_256.get().digest(token.getBytes(StandardCharsets.US_ASCII));
+        return Base64.getEncoder().encodeToString(digest);
     }
 }
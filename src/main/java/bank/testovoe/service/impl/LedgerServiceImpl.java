@@ -0,0 +1,92 @@
+package bank.testovoe.service.impl;
+
+import bank.testovoe.exception.NotFoundException;
+import bank.testovoe.model.BalanceSnapshot;
+import bank.testovoe.model.LedgerEntry;
+import bank.testovoe.model.LedgerEntryType;
+import bank.testovoe.model.Transfer;
+import bank.testovoe.repository.BalanceSnapshotRepository;
+import bank.testovoe.repository.CardRepository;
+import bank.testovoe.repository.LedgerEntryRepository;
+import bank.testovoe.service.LedgerService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Appends ledger entries next to every balance change and answers point-in-time balance
+ * queries. {@code card.balance} stays the current balance that the conditional UPDATEs guard
+ * against overdraft; the ledger is the audit trail it can be rebuilt and checked from.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LedgerServiceImpl implements LedgerService {
+
+    private static final LocalDateTime LEDGER_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final BalanceSnapshotRepository balanceSnapshotRepository;
+    private final CardRepository cardRepository;
+
+    /**
+     * Must join the transaction that moved the balances, so entries and balances commit together.
+     */
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordTransfers(List<Transfer> transfers) {
+        List<LedgerEntry> entries = new ArrayList<>(transfers.size() * 2);
+        for (Transfer transfer : transfers) {
+            entries.add(entry(transfer.getFromCard().getId(), transfer, transfer.getAmount().negate()));
+            entries.add(entry(transfer.getToCard().getId(), transfer, transfer.getAmount()));
+        }
+        ledgerEntryRepository.saveAll(entries);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordDeposit(Long cardId, BigDecimal amount, LocalDateTime at) {
+        ledgerEntryRepository.save(LedgerEntry.builder()
+                .cardId(cardId)
+                .type(LedgerEntryType.DEPOSIT)
+                .amount(amount)
+                .createdAt(at)
+                .build());
+    }
+
+    /**
+     * Latest snapshot at or before {@code asOf} plus the card's entries after it: two index seeks,
+     * however long the card's history is. A card's history starts at its opening snapshot (taken
+     * when the ledger was introduced) or at its first entry.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public BigDecimal balanceAsOf(Long cardId, LocalDateTime asOf) {
+        Optional<BalanceSnapshot> snapshot =
+                balanceSnapshotRepository.findFirstByCardIdAndAsOfLessThanEqualOrderByAsOfDesc(cardId, asOf);
+        if (snapshot.isEmpty() && !cardRepository.existsById(cardId)) {
+            throw new NotFoundException("Card not found");
+        }
+        BigDecimal base = snapshot.map(BalanceSnapshot::getBalance).orElse(BigDecimal.ZERO);
+        LocalDateTime after = snapshot.map(BalanceSnapshot::getAsOf).orElse(LEDGER_START);
+        return base.add(ledgerEntryRepository.sumAmount(cardId, after, asOf));
+    }
+
+    private static LedgerEntry entry(Long cardId, Transfer transfer, BigDecimal amount) {
+        return LedgerEntry.builder()
+                .cardId(cardId)
+                .transferId(transfer.getId())
+                .type(LedgerEntryType.TRANSFER)
+                .amount(amount)
+                .createdAt(transfer.getTimestamp())
+                .build();
+    }
+}
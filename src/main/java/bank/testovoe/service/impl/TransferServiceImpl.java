@@ -1,36 +1,89 @@
 package bank.testovoe.service.impl;
 
+import bank.testovoe.config.CardCache;
+import bank.testovoe.dto.KeysetCursor;
+import bank.testovoe.dto.KeysetPage;
+import bank.testovoe.dto.transfer.BulkTransferResult;
+import bank.testovoe.dto.transfer.TransferHistoryRow;
+import bank.testovoe.dto.transfer.TransferRequest;
+import bank.testovoe.exception.ApiException;
+import bank.testovoe.exception.BadRequestException;
 import bank.testovoe.exception.ForbiddenOperationException;
+import bank.testovoe.exception.InactiveCardException;
 import bank.testovoe.exception.InsufficientFundsException;
 import bank.testovoe.exception.NotFoundException;
+import bank.testovoe.job.CardBackfillJob;
 import bank.testovoe.model.Card;
 import bank.testovoe.model.CardStatus;
 import bank.testovoe.model.Transfer;
 import bank.testovoe.model.User;
 import bank.testovoe.repository.CardRepository;
 import bank.testovoe.repository.TransferRepository;
+import bank.testovoe.service.BalanceStripeService;
+import bank.testovoe.service.CardNumberHashService;
 import bank.testovoe.service.EncryptionService;
+import bank.testovoe.service.LedgerService;
 import bank.testovoe.service.TransferService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class TransferServiceImpl implements TransferService {
 
+    private static final LocalDateTime HISTORY_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final LocalDateTime HISTORY_END = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+    private static final Comparator<TransferHistoryRow> NEWEST_FIRST = Comparator
+            .comparing(TransferHistoryRow::timestamp)
+            .thenComparing(TransferHistoryRow::id)
+            .reversed();
+
     private final CardRepository cardRepository;
     private final TransferRepository transferRepository;
     private final EncryptionService encryptionService;
+    private final CardNumberHashService cardNumberHashService;
+    private final CardBackfillJob cardBackfillJob;
+    private final LedgerService ledgerService;
+    private final BalanceStripeService balanceStripeService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
 
     @Override
     @Transactional
     public Transfer transfer(User user, String fromCardNumber, String toCardNumber, BigDecimal amount) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            Transfer transfer = doTransfer(user, fromCardNumber, toCardNumber, amount);
+            stopOnCompletion(sample);
+            return transfer;
+        } catch (RuntimeException e) {
+            sample.stop(transferTimer(outcome(e)));
+            throw e;
+        }
+    }
+
+    private Transfer doTransfer(User user, String fromCardNumber, String toCardNumber, BigDecimal amount) {
         log.info("User {} initiates transfer from card {} to card {} ({} RUB)",
                 user.getEmail(), fromCardNumber, toCardNumber, amount);
 
@@ -38,39 +91,269 @@ public class TransferServiceImpl implements TransferService {
             throw new ForbiddenOperationException("Cannot transfer to the same card");
         }
 
-        String encryptedFrom = encryptionService.encrypt(fromCardNumber);
-        String encryptedTo = encryptionService.encrypt(toCardNumber);
+        byte[] fromHash = cardNumberHashService.hash(fromCardNumber);
+        byte[] toHash = cardNumberHashService.hash(toCardNumber);
 
+        List<Card> cards = cardRepository.findByOwnerAndCardNumberHashIn(user, List.of(fromHash, toHash));
 
-        Card from = cardRepository.findByEncryptedCardNumberAndOwner(encryptedFrom, user)
+        Card from = findLoaded(cards, fromHash)
+                .or(() -> findUnindexed(fromCardNumber, user))
                 .orElseThrow(() -> new NotFoundException("Source card not found"));
 
-        Card to = cardRepository.findByEncryptedCardNumberAndOwner(encryptedTo, user)
+        Card to = findLoaded(cards, toHash)
+                .or(() -> findUnindexed(toCardNumber, user))
                 .orElseThrow(() -> new NotFoundException("Destination card not found"));
 
         if (from.getStatus() != CardStatus.ACTIVE || to.getStatus() != CardStatus.ACTIVE) {
-            throw new ForbiddenOperationException("Both cards must be active");
+            throw new InactiveCardException("Both cards must be active");
         }
 
-        if (from.getBalance().compareTo(amount) < 0) {
+        if (from.getEffectiveBalance().compareTo(amount) < 0) {
             throw new InsufficientFundsException("Insufficient funds");
         }
 
-        if (!from.getOwner().getId().equals(user.getId())) {
-            throw new ForbiddenOperationException("You can transfer only from your own card");
+        // Balances are changed with conditional UPDATEs in ascending card id order, so concurrent
+        // A->B and B->A transfers always lock rows in the same order and cannot deadlock.
+        LocalDateTime now = LocalDateTime.now();
+        if (from.getId() < to.getId()) {
+            debit(from, amount, now);
+            credit(to, amount, now);
+        } else {
+            credit(to, amount, now);
+            debit(from, amount, now);
         }
 
-        from.setBalance(from.getBalance().subtract(amount));
-        to.setBalance(to.getBalance().add(amount));
-
         Transfer transfer = Transfer.builder()
                 .fromCard(from)
                 .toCard(to)
                 .amount(amount)
-                .timestamp(LocalDateTime.now())
+                .timestamp(now)
                 .build();
 
+        Transfer saved = transferRepository.save(transfer);
+        ledgerService.recordTransfers(List.of(saved));
+        eventPublisher.publishEvent(new CardCache.CardsChanged(user.getId()));
         log.info("Transfer successful: {} -> {} | amount: {}", fromCardNumber, toCardNumber, amount);
-        return transferRepository.save(transfer);
+        return saved;
+    }
+
+    /**
+     * The transfer row is only flushed at commit, so a successful transfer is timed up to the end
+     * of its transaction; a commit that fails is recorded as {@code rolled_back}.
+     */
+    private void stopOnCompletion(Timer.Sample sample) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            sample.stop(transferTimer("success"));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                sample.stop(transferTimer(status == STATUS_COMMITTED ? "success" : "rolled_back"));
+            }
+        });
+    }
+
+    private Timer transferTimer(String outcome) {
+        return meterRegistry.timer("bank.transfer", "outcome", outcome);
+    }
+
+    private static String outcome(RuntimeException e) {
+        if (e instanceof InsufficientFundsException) {
+            return "insufficient_funds";
+        }
+        if (e instanceof InactiveCardException) {
+            return "inactive_card";
+        }
+        if (e instanceof NotFoundException) {
+            return "card_not_found";
+        }
+        return e instanceof ApiException ? "rejected" : "error";
+    }
+
+    /**
+     * Cards are resolved to ids first and then loaded with one {@code SELECT ... FOR UPDATE}
+     * in id order, so the balances checked below are current and stay so until commit. Balances
+     * are changed on the managed entities and transfers take their ids from a pooled sequence,
+     * so the flush issues one batched UPDATE per touched card and batched INSERTs for the
+     * transfers instead of statements per item.
+     */
+    @Override
+    @Transactional
+    public List<BulkTransferResult> transferAll(User user, List<TransferRequest> requests, boolean strict) {
+        log.info("User {} submits {} transfers (strict: {})", user.getEmail(), requests.size(), strict);
+
+        Map<String, Card> cards = lockCards(user, requests);
+        LocalDateTime now = LocalDateTime.now();
+        List<Transfer> transfers = new ArrayList<>(requests.size());
+        List<BulkTransferResult> results = new ArrayList<>(requests.size());
+
+        for (int i = 0; i < requests.size(); i++) {
+            try {
+                Transfer transfer = apply(cards, requests.get(i), now);
+                transfers.add(transfer);
+                results.add(BulkTransferResult.applied(i, transfer));
+            } catch (ApiException e) {
+                if (strict) {
+                    throw new BadRequestException("Transfer #" + i + " rejected: " + e.getMessage());
+                }
+                results.add(BulkTransferResult.rejected(i, e.getMessage()));
+            }
+        }
+
+        transferRepository.saveAll(transfers);
+        ledgerService.recordTransfers(transfers);
+        if (!transfers.isEmpty()) {
+            eventPublisher.publishEvent(new CardCache.CardsChanged(user.getId()));
+        }
+        log.info("Bulk transfer of user {}: {} applied, {} rejected",
+                user.getEmail(), transfers.size(), requests.size() - transfers.size());
+        return results;
+    }
+
+    private Map<String, Card> lockCards(User user, List<TransferRequest> requests) {
+        Map<String, byte[]> hashes = new HashMap<>();
+        for (TransferRequest request : requests) {
+            hashes.computeIfAbsent(request.fromCardNumber(), cardNumberHashService::hash);
+            hashes.computeIfAbsent(request.toCardNumber(), cardNumberHashService::hash);
+        }
+
+        Map<String, Long> idsByHash = new HashMap<>();
+        for (CardRepository.CardRef ref : cardRepository.findRefsByOwnerAndCardNumberHashIn(user, hashes.values())) {
+            idsByHash.put(HexFormat.of().formatHex(ref.getCardNumberHash()), ref.getId());
+        }
+
+        Map<String, Long> idsByNumber = new HashMap<>();
+        hashes.forEach((number, hash) -> {
+            Long id = idsByHash.get(HexFormat.of().formatHex(hash));
+            if (id == null && !cardBackfillJob.isComplete()) {
+                id = cardRepository.findRefByEncryptedCardNumberAndOwner(encryptionService.encrypt(number), user)
+                        .map(CardRepository.CardRef::getId)
+                        .orElse(null);
+            }
+            if (id != null) {
+                idsByNumber.put(number, id);
+            }
+        });
+
+        Map<Long, Card> locked = new HashMap<>();
+        for (Card card : cardRepository.findAllByIdForUpdate(new HashSet<>(idsByNumber.values()))) {
+            locked.put(card.getId(), card);
+        }
+        Map<String, Card> cards = new HashMap<>();
+        idsByNumber.forEach((number, id) -> cards.put(number, locked.get(id)));
+        return cards;
+    }
+
+    private Transfer apply(Map<String, Card> cards, TransferRequest request, LocalDateTime now) {
+        if (request.fromCardNumber().equals(request.toCardNumber())) {
+            throw new ForbiddenOperationException("Cannot transfer to the same card");
+        }
+        Card from = cards.get(request.fromCardNumber());
+        if (from == null) {
+            throw new NotFoundException("Source card not found");
+        }
+        Card to = cards.get(request.toCardNumber());
+        if (to == null) {
+            throw new NotFoundException("Destination card not found");
+        }
+        if (from.getStatus() != CardStatus.ACTIVE || to.getStatus() != CardStatus.ACTIVE) {
+            throw new InactiveCardException("Both cards must be active");
+        }
+
+        // Both cards are locked, so striped cards draw on their stripes and everything else
+        // changes card.balance on the managed entity. Stripes are only drawn when they and
+        // card.balance together cover the amount, so a rejected request leaves them untouched.
+        BigDecimal shortfall = balanceStripeService.debit(from, request.amount(), from.getBalance());
+        if (from.getBalance().compareTo(shortfall) < 0) {
+            throw new InsufficientFundsException("Insufficient funds");
+        }
+        from.setBalance(from.getBalance().subtract(shortfall));
+        if (!balanceStripeService.credit(to, request.amount(), false)) {
+            to.setBalance(to.getBalance().add(request.amount()));
+        }
+        return Transfer.builder()
+                .fromCard(from)
+                .toCard(to)
+                .amount(request.amount())
+                .timestamp(now)
+                .build();
+    }
+
+    /**
+     * Every source is an index range scan returning at most {@code size + 1} rows: the card's
+     * outgoing and incoming transfers, or the outgoing transfers of each of the user's cards
+     * (transfers only move money between one user's cards, so that covers each exactly once).
+     * The sources are merged and cut to the page, and the extra row only tells whether another
+     * page exists.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public KeysetPage<TransferHistoryRow> getHistory(User user, Long cardId, LocalDateTime from, LocalDateTime to,
+                                                     String cursor, int size) {
+        KeysetCursor position = cursor != null
+                ? KeysetCursor.decode(cursor)
+                : KeysetCursor.before(to != null ? to : HISTORY_END);
+        LocalDateTime since = from != null ? from : HISTORY_START;
+        Limit limit = Limit.of(size + 1);
+
+        List<TransferHistoryRow> candidates = new ArrayList<>();
+        if (cardId != null) {
+            Card card = cardRepository.findByIdAndOwner(cardId, user)
+                    .orElseThrow(() -> new NotFoundException("Card not found"));
+            candidates.addAll(transferRepository.findOutgoingHistory(
+                    card.getId(), since, position.timestamp(), position.id(), limit));
+            candidates.addAll(transferRepository.findIncomingHistory(
+                    card.getId(), since, position.timestamp(), position.id(), limit));
+        } else {
+            for (Long ownCardId : cardRepository.findIdsByOwner(user)) {
+                candidates.addAll(transferRepository.findOutgoingHistory(
+                        ownCardId, since, position.timestamp(), position.id(), limit));
+            }
+        }
+
+        List<TransferHistoryRow> rows = candidates.stream()
+                .sorted(NEWEST_FIRST)
+                .limit(size + 1L)
+                .toList();
+        if (rows.size() <= size) {
+            return KeysetPage.of(rows, null);
+        }
+        List<TransferHistoryRow> content = rows.subList(0, size);
+        TransferHistoryRow last = content.get(size - 1);
+        return KeysetPage.of(content, new KeysetCursor(last.timestamp(), last.id()).encode());
+    }
+
+    private static Optional<Card> findLoaded(List<Card> cards, byte[] hash) {
+        return cards.stream()
+                .filter(card -> Arrays.equals(card.getCardNumberHash(), hash))
+                .findFirst();
+    }
+
+    /**
+     * Cards the backfill has not indexed yet can only be found by ciphertext.
+     */
+    private Optional<Card> findUnindexed(String cardNumber, User user) {
+        if (cardBackfillJob.isComplete()) {
+            return Optional.empty();
+        }
+        return cardRepository.findByEncryptedCardNumberAndOwner(encryptionService.encrypt(cardNumber), user);
+    }
+
+    /**
+     * A striped card pays from its stripes first and the rest from {@code card.balance}; if that
+     * part fails the exception rolls back the stripe draws with the transfer.
+     */
+    private void debit(Card card, BigDecimal amount, LocalDateTime now) {
+        BigDecimal shortfall = balanceStripeService.debit(card, amount, card.getBalance());
+        if (shortfall.signum() > 0 && cardRepository.debit(card.getId(), shortfall, now) == 0) {
+            throw new InsufficientFundsException("Insufficient funds");
+        }
+    }
+
+    private void credit(Card card, BigDecimal amount, LocalDateTime now) {
+        if (!balanceStripeService.credit(card, amount, false) && cardRepository.credit(card.getId(), amount, now) == 0) {
+            throw new InactiveCardException("Both cards must be active");
+        }
     }
 }
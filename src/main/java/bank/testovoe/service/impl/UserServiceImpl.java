@@ -19,7 +19,7 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public Optional<User> findByEmail(String email) {
-        log.info("Authenticated name: {}", email);
+        log.debug("Looking up user by email: {}", email);
         return userRepository.findByEmail(email);
     }
 
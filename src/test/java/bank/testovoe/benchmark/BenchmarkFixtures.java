@@ -0,0 +1,143 @@
+package bank.testovoe.benchmark;
+
+import bank.testovoe.model.Card;
+import bank.testovoe.model.CardStatus;
+import bank.testovoe.model.Role;
+import bank.testovoe.model.Transfer;
+import bank.testovoe.model.User;
+import bank.testovoe.repository.CardRepository;
+import bank.testovoe.repository.LedgerEntryRepository;
+import bank.testovoe.repository.TransferRepository;
+import bank.testovoe.service.CardNumberHashService;
+import bank.testovoe.service.EncryptionService;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed secrets, deterministic data and in-memory repository stand-ins shared by the benchmarks,
+ * so every run measures the same work and results stay comparable across commits.
+ */
+final class BenchmarkFixtures {
+
+    static final String JWT_SECRET = "benchmark-secret-benchmark-secret-0123456789";
+    static final String AES_SECRET = "benchmark-aes-key";
+    static final String HASH_SECRET = "benchmark-card-number-index-key";
+
+    private BenchmarkFixtures() {
+    }
+
+    static User user() {
+        return User.builder().id(1L).email("bench@test.com").password("x").role(Role.USER).build();
+    }
+
+    static String cardNumber(int index) {
+        return String.format("4000%012d", index);
+    }
+
+    /**
+     * @param indexed whether the derived last4/hash columns are filled, as for cards the backfill
+     *                has reached; otherwise masking has to decrypt
+     */
+    static Card card(long id, User owner, EncryptionService encryption, CardNumberHashService hashing,
+                     BigDecimal balance, boolean indexed) {
+        String number = cardNumber((int) id);
+        LocalDateTime now = LocalDateTime.of(2025, 1, 1, 0, 0);
+        return Card.builder()
+                .id(id)
+                .owner(owner)
+                .encryptedCardNumber(encryption.encrypt(number))
+                .cardNumberHash(indexed ? hashing.hash(number) : null)
+                .last4(indexed ? number.substring(12) : null)
+                .expiryDate(LocalDate.of(2030, 1, 31))
+                .status(CardStatus.ACTIVE)
+                .balance(balance)
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+    }
+
+    /**
+     * Serves only the queries {@code TransferServiceImpl.transfer} issues, from a map; anything
+     * else fails loudly so a changed access path shows up instead of being silently skipped.
+     */
+    static CardRepository inMemoryCardRepository(Collection<Card> cards) {
+        Map<Long, Card> byId = new ConcurrentHashMap<>();
+        cards.forEach(card -> byId.put(card.getId(), card));
+        return proxy(CardRepository.class, (method, args) -> switch (method) {
+            case "findByOwnerAndCardNumberHashIn" -> {
+                User owner = (User) args[0];
+                @SuppressWarnings("unchecked")
+                Collection<byte[]> hashes = (Collection<byte[]>) args[1];
+                List<Card> found = new ArrayList<>(2);
+                for (Card card : byId.values()) {
+                    if (card.getOwner().getId().equals(owner.getId())
+                            && hashes.stream().anyMatch(hash -> Arrays.equals(hash, card.getCardNumberHash()))) {
+                        found.add(card);
+                    }
+                }
+                yield found;
+            }
+            case "debit" -> adjust(byId.get((Long) args[0]), ((BigDecimal) args[1]).negate());
+            case "credit" -> adjust(byId.get((Long) args[0]), (BigDecimal) args[1]);
+            default -> throw new UnsupportedOperationException(method);
+        });
+    }
+
+    static TransferRepository inMemoryTransferRepository() {
+        AtomicLong ids = new AtomicLong();
+        return proxy(TransferRepository.class, (method, args) -> {
+            if (!method.equals("save")) {
+                throw new UnsupportedOperationException(method);
+            }
+            Transfer transfer = (Transfer) args[0];
+            transfer.setId(ids.incrementAndGet());
+            return transfer;
+        });
+    }
+
+    /**
+     * Accepts ledger entries and drops them; the benchmark measures the transfer path, not storage.
+     */
+    static LedgerEntryRepository inMemoryLedgerEntryRepository() {
+        return proxy(LedgerEntryRepository.class, (method, args) -> switch (method) {
+            case "save", "saveAll" -> args[0];
+            default -> throw new UnsupportedOperationException(method);
+        });
+    }
+
+    private static int adjust(Card card, BigDecimal delta) {
+        synchronized (card) {
+            BigDecimal balance = card.getBalance().add(delta);
+            if (card.getStatus() != CardStatus.ACTIVE || balance.signum() < 0) {
+                return 0;
+            }
+            card.setBalance(balance);
+            return 1;
+        }
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "toString" -> "InMemory" + type.getSimpleName();
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> handler.handle(method.getName(), args);
+                }));
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object handle(String method, Object[] args);
+    }
+}
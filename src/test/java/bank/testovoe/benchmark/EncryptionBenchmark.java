@@ -0,0 +1,89 @@
+package bank.testovoe.benchmark;
+
+import bank.testovoe.service.impl.EncryptionServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per-call {@code Cipher.getInstance} + {@code init} implementation that
+ * {@link EncryptionServiceImpl} used to have with the pooled-cipher one, for both the String
+ * and the byte[] API.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class EncryptionBenchmark {
+
+    private static final String SECRET = "benchmark-aes-key";
+    private static final String CARD_NUMBER = "6171053773368137";
+
+    private EncryptionServiceImpl service;
+    private SecretKeySpec key;
+    private String encrypted;
+    private byte[] plainBytes;
+    private byte[] encryptedBytes;
+
+    @Setup
+    public void setUp() {
+        service = new EncryptionServiceImpl(SECRET, new SimpleMeterRegistry());
+        key = new SecretKeySpec(Arrays.copyOf(SECRET.getBytes(StandardCharsets.UTF_8), 16), "AES");
+        encrypted = service.encrypt(CARD_NUMBER);
+        plainBytes = CARD_NUMBER.getBytes(StandardCharsets.UTF_8);
+        encryptedBytes = service.encrypt(plainBytes);
+    }
+
+    @Benchmark
+    public String encryptPerCallCipher() throws Exception {
+        Cipher cipher = Cipher.getInstance("AES");
+        cipher.init(Cipher.ENCRYPT_MODE, key);
+        return Base64.getEncoder().encodeToString(cipher.doFinal(CARD_NUMBER.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Benchmark
+    public String encryptPooled() {
+        return service.encrypt(CARD_NUMBER);
+    }
+
+    @Benchmark
+    public byte[] encryptPooledBytes() {
+        return service.encrypt(plainBytes);
+    }
+
+    @Benchmark
+    public String decryptPerCallCipher() throws Exception {
+        Cipher cipher = Cipher.getInstance("AES");
+        cipher.init(Cipher.DECRYPT_MODE, key);
+        return new String(cipher.doFinal(Base64.getDecoder().decode(encrypted)), StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String decryptPooled() {
+        return service.decrypt(encrypted);
+    }
+
+    @Benchmark
+    public byte[] decryptPooledBytes() {
+        return service.decrypt(encryptedBytes);
+    }
+}
@@ -0,0 +1,76 @@
+package bank.testovoe.benchmark;
+
+import bank.testovoe.dto.auth.TokenClaims;
+import bank.testovoe.model.Role;
+import bank.testovoe.model.User;
+import bank.testovoe.service.impl.JwtServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token issuing and verification. {@code parseCached} is the steady state of a client reusing
+ * its token; {@code parseUncached} cycles through more distinct tokens than the (zero-sized)
+ * cache can hold, so every call pays for the signature check.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class JwtBenchmark {
+
+    private static final int DISTINCT_TOKENS = 4096;
+
+    private JwtServiceImpl cachingService;
+    private JwtServiceImpl uncachedService;
+    private User user;
+    private String token;
+    private String[] tokens;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup
+    public void setUp() {
+        cachingService = new JwtServiceImpl(BenchmarkFixtures.JWT_SECRET, 100_000);
+        uncachedService = new JwtServiceImpl(BenchmarkFixtures.JWT_SECRET, 0);
+        user = BenchmarkFixtures.user();
+        token = cachingService.generateToken(user);
+        tokens = new String[DISTINCT_TOKENS];
+        for (int i = 0; i < DISTINCT_TOKENS; i++) {
+            tokens[i] = uncachedService.generateToken(
+                    User.builder().id((long) i).email("user" + i + "@test.com").role(Role.USER).build());
+        }
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return cachingService.generateToken(user);
+    }
+
+    @Benchmark
+    public TokenClaims parseCached() {
+        return cachingService.parseToken(token);
+    }
+
+    @Benchmark
+    public TokenClaims parseUncached(Cursor cursor) {
+        cursor.next = (cursor.next + 1) % DISTINCT_TOKENS;
+        return uncachedService.parseToken(tokens[cursor.next]);
+    }
+}
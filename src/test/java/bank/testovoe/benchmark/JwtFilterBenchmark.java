@@ -0,0 +1,95 @@
+package bank.testovoe.benchmark;
+
+import bank.testovoe.config.security.JwtFilter;
+import bank.testovoe.config.security.UserPrincipalCache;
+import bank.testovoe.model.User;
+import bank.testovoe.service.UserService;
+import bank.testovoe.service.impl.JwtServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One authenticated request through {@link JwtFilter}: header parsing, token verification (cached
+ * after the first call, as in production), principal resolution and populating the security
+ * context. {@code statelessPrincipal} switches between the principal cache and building the
+ * principal from the token claims.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtFilterBenchmark {
+
+    @Param({"false", "true"})
+    public boolean statelessPrincipal;
+
+    private JwtFilter filter;
+    private String authorization;
+
+    @Setup
+    public void setUp() {
+        User user = BenchmarkFixtures.user();
+        JwtServiceImpl jwtService = new JwtServiceImpl(BenchmarkFixtures.JWT_SECRET, 100_000);
+        filter = new JwtFilter(jwtService, new SingleUserService(user),
+                new UserPrincipalCache(Duration.ofMinutes(5), 1000, Duration.ofHours(24), event -> { }), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(filter, "statelessPrincipal", statelessPrincipal);
+        authorization = "Bearer " + jwtService.generateToken(user);
+    }
+
+    @Benchmark
+    public MockHttpServletResponse authenticatedRequest() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/cards");
+        request.addHeader("Authorization", authorization);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        try {
+            filter.doFilter(request, response, new MockFilterChain());
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+        return response;
+    }
+
+    private record SingleUserService(User user) implements UserService {
+
+        @Override
+        public Optional<User> findByEmail(String email) {
+            return Optional.of(user);
+        }
+
+        @Override
+        public User save(User user) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean existsByEmail(String email) {
+            return true;
+        }
+
+        @Override
+        public User findById(Long id) {
+            return user;
+        }
+    }
+}
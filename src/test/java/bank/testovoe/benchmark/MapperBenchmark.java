@@ -0,0 +1,99 @@
+package bank.testovoe.benchmark;
+
+import bank.testovoe.dto.card.CardDto;
+import bank.testovoe.dto.card.CardSummary;
+import bank.testovoe.dto.transfer.TransferHistoryRow;
+import bank.testovoe.dto.transfer.TransferResponse;
+import bank.testovoe.mapper.CardMapper;
+import bank.testovoe.mapper.TransferMapper;
+import bank.testovoe.model.Card;
+import bank.testovoe.model.User;
+import bank.testovoe.service.impl.CardNumberHashServiceImpl;
+import bank.testovoe.service.impl.EncryptionServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping a page of cards or transfers to DTOs, for page sizes the API actually serves. The
+ * {@code legacy} variants map cards the backfill has not reached yet, which have no stored last
+ * four digits and must be decrypted to be masked.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapperBenchmark {
+
+    @Param({"20", "100"})
+    public int size;
+
+    private CardMapper cardMapper;
+    private TransferMapper transferMapper;
+    private List<Card> cards;
+    private List<Card> legacyCards;
+    private List<CardSummary> summaries;
+    private List<TransferHistoryRow> historyRows;
+
+    @Setup
+    public void setUp() {
+        EncryptionServiceImpl encryption = new EncryptionServiceImpl(BenchmarkFixtures.AES_SECRET, new SimpleMeterRegistry());
+        CardNumberHashServiceImpl hashing = new CardNumberHashServiceImpl(BenchmarkFixtures.HASH_SECRET);
+        cardMapper = new CardMapper(encryption);
+        transferMapper = new TransferMapper(cardMapper);
+
+        User owner = BenchmarkFixtures.user();
+        cards = new ArrayList<>(size);
+        legacyCards = new ArrayList<>(size);
+        summaries = new ArrayList<>(size);
+        historyRows = new ArrayList<>(size);
+        LocalDateTime timestamp = LocalDateTime.of(2025, 1, 1, 12, 0);
+        for (int i = 1; i <= size; i++) {
+            BigDecimal balance = BigDecimal.valueOf(100_000 + i, 2);
+            Card card = BenchmarkFixtures.card(i, owner, encryption, hashing, balance, true);
+            cards.add(card);
+            legacyCards.add(BenchmarkFixtures.card(i, owner, encryption, hashing, balance, false));
+            summaries.add(new CardSummary(card.getId(), card.getLast4(), card.getEncryptedCardNumber(),
+                    card.getExpiryDate(), card.getStatus(), card.getBalance()));
+            historyRows.add(new TransferHistoryRow((long) i, BigDecimal.TEN, timestamp.minusMinutes(i),
+                    card.getLast4(), card.getEncryptedCardNumber(), card.getLast4(), card.getEncryptedCardNumber()));
+        }
+    }
+
+    @Benchmark
+    public List<CardDto> cardsToDto() {
+        return cards.stream().map(cardMapper::toDto).toList();
+    }
+
+    @Benchmark
+    public List<CardDto> legacyCardsToDto() {
+        return legacyCards.stream().map(cardMapper::toDto).toList();
+    }
+
+    @Benchmark
+    public List<CardDto> summariesToDto() {
+        return summaries.stream().map(cardMapper::toDto).toList();
+    }
+
+    @Benchmark
+    public List<TransferResponse> historyToDto() {
+        return historyRows.stream().map(transferMapper::toDto).toList();
+    }
+}
@@ -0,0 +1,101 @@
+package bank.testovoe.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Platform-thread vs virtual-thread request execution. Each operation is a burst of
+ * {@code concurrency} simulated requests: a bit of CPU work (JWT/mapping) and two blocking
+ * "queries" behind a permit semaphore the size of the Hikari pool, as {@code PermitDataSource}
+ * does. The platform executor is sized like Tomcat's default worker pool (200). SampleTime
+ * reports the p99 of a whole burst next to its mean; throughput is {@code concurrency / mean}.
+ * <p>
+ * The virtual mode needs JDK 21 ({@code mvn -Pbenchmark test -Djmh.include=RequestThreading} on a
+ * JDK 21 build picks up the {@code jdk21} profile); on older JDKs those runs fail in setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.SampleTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestThreadingBenchmark {
+
+    private static final int DB_PERMITS = 10;
+    private static final long QUERY_MILLIS = 2;
+
+    @Param({"platform", "virtual"})
+    public String mode;
+
+    @Param({"200", "1000"})
+    public int concurrency;
+
+    private ExecutorService executor;
+    private Semaphore dbPermits;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dbPermits = new Semaphore(DB_PERMITS, true);
+        executor = "virtual".equals(mode)
+                ? (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null)
+                : Executors.newFixedThreadPool(200);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public void burst(Blackhole blackhole) throws Exception {
+        List<Future<Long>> requests = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            long seed = i;
+            requests.add(executor.submit(() -> request(seed)));
+        }
+        for (Future<Long> request : requests) {
+            blackhole.consume(request.get());
+        }
+    }
+
+    private long request(long seed) throws InterruptedException {
+        long result = cpuWork(seed);
+        for (int query = 0; query < 2; query++) {
+            dbPermits.acquire();
+            try {
+                Thread.sleep(QUERY_MILLIS);
+            } finally {
+                dbPermits.release();
+            }
+        }
+        return result;
+    }
+
+    private static long cpuWork(long seed) {
+        long x = seed;
+        for (int i = 0; i < 20_000; i++) {
+            x = x * 6364136223846793005L + 1442695040888963407L;
+        }
+        return x;
+    }
+}
@@ -0,0 +1,83 @@
+package bank.testovoe.benchmark;
+
+import bank.testovoe.job.CardBackfillJob;
+import bank.testovoe.model.Card;
+import bank.testovoe.model.Transfer;
+import bank.testovoe.model.User;
+import bank.testovoe.service.impl.BalanceStripeServiceImpl;
+import bank.testovoe.service.impl.CardNumberHashServiceImpl;
+import bank.testovoe.service.impl.EncryptionServiceImpl;
+import bank.testovoe.service.impl.LedgerServiceImpl;
+import bank.testovoe.service.impl.TransferServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The in-process cost of {@link TransferServiceImpl#transfer}: hashing both card numbers,
+ * resolving and checking the cards, the ordered debit/credit and building the transfer, with the
+ * repositories replaced by in-memory stand-ins. Database time is excluded on purpose; it is
+ * covered by the load harness against a real database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransferBenchmark {
+
+    private static final int CARDS = 16;
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+    private TransferServiceImpl transferService;
+    private User user;
+    private String[] cardNumbers;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        EncryptionServiceImpl encryption = new EncryptionServiceImpl(BenchmarkFixtures.AES_SECRET, meterRegistry);
+        CardNumberHashServiceImpl hashing = new CardNumberHashServiceImpl(BenchmarkFixtures.HASH_SECRET);
+        user = BenchmarkFixtures.user();
+
+        List<Card> cards = new ArrayList<>(CARDS);
+        cardNumbers = new String[CARDS];
+        for (int i = 0; i < CARDS; i++) {
+            // Large enough that transfers never run out of funds during a run
+            cards.add(BenchmarkFixtures.card(i + 1, user, encryption, hashing, new BigDecimal("1000000000.00"), true));
+            cardNumbers[i] = BenchmarkFixtures.cardNumber(i + 1);
+        }
+        transferService = new TransferServiceImpl(
+                BenchmarkFixtures.inMemoryCardRepository(cards),
+                BenchmarkFixtures.inMemoryTransferRepository(),
+                encryption,
+                hashing,
+                new CardBackfillJob(null, encryption, hashing, new SimpleMeterRegistry()),
+                new LedgerServiceImpl(BenchmarkFixtures.inMemoryLedgerEntryRepository(), null, null),
+                new BalanceStripeServiceImpl(null, null),
+                event -> { },
+                meterRegistry);
+    }
+
+    @Benchmark
+    public Transfer transfer() {
+        int from = next;
+        next = (next + 1) % CARDS;
+        return transferService.transfer(user, cardNumbers[from], cardNumbers[next], AMOUNT);
+    }
+}
@@ -0,0 +1,76 @@
+package bank.testovoe.config;
+
+import bank.testovoe.dto.card.CardDto;
+import bank.testovoe.model.CardStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CardCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private CardCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new CardCache(Duration.ofMinutes(1), 100, meterRegistry);
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void getCards_Repeated_LoadsOnce() {
+        cache.getCards(1L, () -> load("10.00"));
+        List<CardDto> cards = cache.getCards(1L, () -> load("20.00"));
+
+        assertEquals(1, loads.get());
+        assertEquals(new BigDecimal("10.00"), cards.get(0).balance());
+        assertEquals(1.0, meterRegistry.get("bank.cards.cache").tags("view", "list", "result", "hit").counter().count());
+    }
+
+    @Test
+    void onCardsChanged_DropsListAndSearchesOfThatUserOnly() {
+        PageRequest pageable = PageRequest.of(0, 10);
+        cache.getCards(1L, () -> load("10.00"));
+        cache.getCards(2L, () -> load("10.00"));
+        cache.search(1L, CardStatus.ACTIVE, null, null, pageable, () -> page("10.00"));
+
+        cache.onCardsChanged(new CardCache.CardsChanged(1L));
+
+        assertEquals(new BigDecimal("20.00"), cache.getCards(1L, () -> load("20.00")).get(0).balance());
+        assertEquals(new BigDecimal("20.00"),
+                cache.search(1L, CardStatus.ACTIVE, null, null, pageable, () -> page("20.00")).getContent().get(0).balance());
+        assertEquals(new BigDecimal("10.00"), cache.getCards(2L, () -> load("30.00")).get(0).balance());
+    }
+
+    @Test
+    void getCards_InvalidatedWhileLoading_DoesNotCacheStaleResult() {
+        cache.getCards(1L, () -> {
+            List<CardDto> stale = load("10.00");
+            cache.evict(1L);
+            return stale;
+        });
+
+        assertEquals(new BigDecimal("20.00"), cache.getCards(1L, () -> load("20.00")).get(0).balance());
+    }
+
+    private List<CardDto> load(String balance) {
+        loads.incrementAndGet();
+        return List.of(CardDto.builder().id(1L).status(CardStatus.ACTIVE).balance(new BigDecimal(balance)).build());
+    }
+
+    private Page<CardDto> page(String balance) {
+        return new PageImpl<>(load(balance));
+    }
+}
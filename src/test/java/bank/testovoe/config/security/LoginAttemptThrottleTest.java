@@ -0,0 +1,50 @@
+package bank.testovoe.config.security;
+
+import bank.testovoe.exception.TooManyRequestsException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoginAttemptThrottleTest {
+
+    @Test
+    void acquire_OverEmailLimit_ThrowsWithRetryAfter() {
+        LoginAttemptThrottle throttle = new LoginAttemptThrottle(Duration.ofMinutes(1), 3, 100, 1000);
+
+        for (int i = 0; i < 3; i++) {
+            throttle.acquire("user@test.com", "10.0.0." + i);
+        }
+        TooManyRequestsException e = assertThrows(TooManyRequestsException.class,
+                () -> throttle.acquire("USER@test.com", "10.0.0.9"));
+
+        assertTrue(e.getRetryAfter().compareTo(Duration.ZERO) > 0);
+        assertTrue(e.getRetryAfter().compareTo(Duration.ofMinutes(1)) <= 0);
+        assertDoesNotThrow(() -> throttle.acquire("other@test.com", "10.0.0.9"));
+    }
+
+    @Test
+    void acquire_OverIpLimit_ThrowsForAnyEmail() {
+        LoginAttemptThrottle throttle = new LoginAttemptThrottle(Duration.ofMinutes(1), 100, 5, 1000);
+
+        for (int i = 0; i < 5; i++) {
+            throttle.acquire("user" + i + "@test.com", "10.0.0.1");
+        }
+
+        assertThrows(TooManyRequestsException.class, () -> throttle.acquire("fresh@test.com", "10.0.0.1"));
+        assertDoesNotThrow(() -> throttle.acquire("fresh@test.com", "10.0.0.2"));
+    }
+
+    @Test
+    void acquire_AfterWindowsPass_AllowsAgain() throws InterruptedException {
+        LoginAttemptThrottle throttle = new LoginAttemptThrottle(Duration.ofMillis(50), 2, 100, 1000);
+        throttle.acquire("user@test.com", "10.0.0.1");
+        throttle.acquire("user@test.com", "10.0.0.1");
+        assertThrows(TooManyRequestsException.class, () -> throttle.acquire("user@test.com", "10.0.0.1"));
+
+        Thread.sleep(120);
+
+        assertDoesNotThrow(() -> throttle.acquire("user@test.com", "10.0.0.1"));
+    }
+}
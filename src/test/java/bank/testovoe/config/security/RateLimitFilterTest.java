@@ -0,0 +1,83 @@
+package bank.testovoe.config.security;
+
+import bank.testovoe.model.Role;
+import bank.testovoe.model.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitFilterTest {
+
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        // read: 3 requests burst, then one per 10 s; write: 1 burst, export: 1 burst
+        filter = new RateLimitFilter(true, 3, 0.1, 1, 0.1, 1, 0.01, Duration.ofMinutes(1), 1000,
+                new ObjectMapper().registerModule(new JavaTimeModule()), new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void reads_OverBurst_RejectedWithRetryAfter() throws Exception {
+        authenticate(1L);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, request("GET", "/api/cards").getStatus());
+        }
+
+        MockHttpServletResponse rejected = request("GET", "/api/cards/search");
+
+        assertEquals(429, rejected.getStatus());
+        long retryAfter = Long.parseLong(rejected.getHeader("Retry-After"));
+        assertTrue(retryAfter >= 1 && retryAfter <= 10, "Retry-After was " + retryAfter);
+    }
+
+    @Test
+    void buckets_AreSeparatePerUserAndEndpointClass() throws Exception {
+        authenticate(1L);
+        assertEquals(200, request("POST", "/api/transfer").getStatus());
+        assertEquals(429, request("POST", "/api/transfer").getStatus());
+        assertEquals(200, request("GET", "/api/cards").getStatus());
+        assertEquals(200, request("GET", "/api/admin/cards/export").getStatus());
+        assertEquals(429, request("GET", "/api/admin/cards/export").getStatus());
+
+        authenticate(2L);
+        assertEquals(200, request("POST", "/api/transfer").getStatus());
+    }
+
+    @Test
+    void anonymousRequests_AreNotLimited() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            assertEquals(200, request("POST", "/api/auth/login").getStatus());
+        }
+    }
+
+    private void authenticate(long userId) {
+        User user = User.builder().id(userId).email("user" + userId + "@test.com").role(Role.USER).build();
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, List.of()));
+    }
+
+    private MockHttpServletResponse request(String method, String uri) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest(method, uri), response, new MockFilterChain());
+        return response;
+    }
+}
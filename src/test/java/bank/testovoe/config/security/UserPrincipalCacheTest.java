@@ -0,0 +1,35 @@
+package bank.testovoe.config.security;
+
+import bank.testovoe.model.Role;
+import bank.testovoe.model.User;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserPrincipalCacheTest {
+
+    private final List<Object> events = new ArrayList<>();
+    private final UserPrincipalCache cache =
+            new UserPrincipalCache(Duration.ofMinutes(5), 1000, Duration.ofHours(24), events::add);
+
+    @Test
+    void onUserChanged_EmailChanged_EvictsOldAndNewEmailAndRevokesTokens() {
+        User user = User.builder().id(7L).email("old@test.com").role(Role.USER).build();
+        cache.onUserLoaded(user);
+        cache.get("old@test.com", email -> Optional.of(user));
+        assertFalse(cache.isRevoked(7L));
+
+        user.setEmail("new@test.com");
+        cache.onUserWritten(user);
+        assertEquals(List.of(new UserPrincipalCache.UserChanged(7L, "new@test.com", "old@test.com")), events);
+        cache.onUserChanged((UserPrincipalCache.UserChanged) events.get(0));
+
+        assertTrue(cache.get("old@test.com", email -> Optional.empty()).isEmpty());
+        assertTrue(cache.isRevoked(7L));
+    }
+}
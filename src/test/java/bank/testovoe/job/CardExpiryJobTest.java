@@ -0,0 +1,109 @@
+package bank.testovoe.job;
+
+import bank.testovoe.model.Card;
+import bank.testovoe.model.CardStatus;
+import bank.testovoe.model.Role;
+import bank.testovoe.model.User;
+import bank.testovoe.repository.CardRepository;
+import bank.testovoe.repository.JobLeaseRepository;
+import bank.testovoe.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "cards.expiry.chunk-size=2")
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({SimpleMeterRegistry.class, CardExpiryJob.class, JobLeaseRepository.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CardExpiryJobTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 6, 1);
+
+    @Autowired
+    private CardExpiryJob cardExpiryJob;
+
+    @Autowired
+    private JobLeaseRepository jobLeaseRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+    private int cardCount;
+
+    @BeforeEach
+    void setUp() {
+        cardRepository.deleteAll();
+        userRepository.deleteAll();
+        jobLeaseRepository.release("card-expiry", "other-node");
+        user = userRepository.save(User.builder().email("expiry@test.com").password("x").role(Role.USER).build());
+    }
+
+    @Test
+    void expire_PastExpiryActiveCards_ExpiredInChunks() {
+        Card first = saveCard(TODAY.minusYears(1), CardStatus.ACTIVE);
+        Card second = saveCard(TODAY.minusMonths(1), CardStatus.ACTIVE);
+        Card third = saveCard(TODAY.minusDays(1), CardStatus.ACTIVE);
+        Card blocked = saveCard(TODAY.minusDays(1), CardStatus.BLOCKED);
+        Card lastDay = saveCard(TODAY, CardStatus.ACTIVE);
+        LocalDateTime beforeRun = LocalDateTime.now();
+
+        assertEquals(3, cardExpiryJob.expire(TODAY));
+        assertEquals(0, cardExpiryJob.expire(TODAY));
+
+        assertEquals(CardStatus.EXPIRED, statusOf(first));
+        assertEquals(CardStatus.EXPIRED, statusOf(second));
+        assertEquals(CardStatus.EXPIRED, statusOf(third));
+        assertEquals(CardStatus.BLOCKED, statusOf(blocked));
+        assertEquals(CardStatus.ACTIVE, statusOf(lastDay));
+        for (Card card : List.of(first, second, third)) {
+            assertFalse(cardRepository.findById(card.getId()).orElseThrow().getUpdatedAt().isBefore(beforeRun));
+        }
+    }
+
+    @Test
+    void expire_LeaseHeldByAnotherNode_DoesNothing() {
+        Card card = saveCard(TODAY.minusDays(1), CardStatus.ACTIVE);
+        assertTrue(jobLeaseRepository.tryAcquire("card-expiry", "other-node", Duration.ofMinutes(5)));
+
+        assertEquals(0, cardExpiryJob.expire(TODAY));
+        assertEquals(CardStatus.ACTIVE, statusOf(card));
+
+        jobLeaseRepository.release("card-expiry", "other-node");
+        assertEquals(1, cardExpiryJob.expire(TODAY));
+    }
+
+    private CardStatus statusOf(Card card) {
+        return cardRepository.findById(card.getId()).orElseThrow().getStatus();
+    }
+
+    private Card saveCard(LocalDate expiryDate, CardStatus status) {
+        cardCount++;
+        return cardRepository.save(Card.builder()
+                .owner(user)
+                .encryptedCardNumber("encrypted-" + cardCount)
+                .expiryDate(expiryDate)
+                .status(status)
+                .balance(BigDecimal.ZERO)
+                .build());
+    }
+}
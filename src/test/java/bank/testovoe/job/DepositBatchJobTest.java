@@ -0,0 +1,138 @@
+package bank.testovoe.job;
+
+import bank.testovoe.model.Card;
+import bank.testovoe.model.CardStatus;
+import bank.testovoe.model.DepositIntake;
+import bank.testovoe.model.DepositStatus;
+import bank.testovoe.model.Role;
+import bank.testovoe.model.User;
+import bank.testovoe.repository.BalanceSnapshotRepository;
+import bank.testovoe.repository.CardRepository;
+import bank.testovoe.repository.DepositIntakeRepository;
+import bank.testovoe.repository.LedgerEntryRepository;
+import bank.testovoe.repository.UserRepository;
+import bank.testovoe.service.CardNumberHashService;
+import bank.testovoe.service.EncryptionService;
+import bank.testovoe.service.impl.CardNumberHashServiceImpl;
+import bank.testovoe.service.impl.EncryptionServiceImpl;
+import bank.testovoe.service.impl.LedgerServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({SimpleMeterRegistry.class, DepositBatchJob.class, LedgerServiceImpl.class, EncryptionServiceImpl.class,
+        CardNumberHashServiceImpl.class, CardBackfillJob.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DepositBatchJobTest {
+
+    @Autowired
+    private DepositBatchJob depositBatchJob;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private CardNumberHashService cardNumberHashService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private DepositIntakeRepository depositIntakeRepository;
+
+    @Autowired
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    @Autowired
+    private BalanceSnapshotRepository balanceSnapshotRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        depositIntakeRepository.deleteAll();
+        ledgerEntryRepository.deleteAll();
+        balanceSnapshotRepository.deleteAll();
+        cardRepository.deleteAll();
+        userRepository.deleteAll();
+        user = userRepository.save(User.builder().email("deposits@test.com").password("x").role(Role.USER).build());
+    }
+
+    @Test
+    void applyBatch_CoalescesDepositsPerCard() {
+        Card a = saveCard("7200000000000001", CardStatus.ACTIVE);
+        Card b = saveCard("7200000000000002", CardStatus.ACTIVE);
+        for (int i = 0; i < 5; i++) {
+            queue(a, "10.00");
+        }
+        queue(b, "2.50");
+        queue(b, "2.50");
+
+        assertEquals(7, depositBatchJob.applyBatch());
+        assertEquals(0, depositBatchJob.applyBatch());
+
+        assertEquals(0, new BigDecimal("50.00").compareTo(cardRepository.findById(a.getId()).orElseThrow().getBalance()));
+        assertEquals(0, new BigDecimal("5.00").compareTo(cardRepository.findById(b.getId()).orElseThrow().getBalance()));
+        assertEquals(7, ledgerEntryRepository.count());
+        assertTrue(depositIntakeRepository.findAll().stream()
+                .allMatch(d -> d.getStatus() == DepositStatus.APPLIED && d.getProcessedAt() != null));
+    }
+
+    @Test
+    void applyBatch_BlockedCard_RejectsItsDeposits() {
+        Card active = saveCard("7200000000000003", CardStatus.ACTIVE);
+        Card blocked = saveCard("7200000000000004", CardStatus.ACTIVE);
+        DepositIntake applied = queue(active, "10.00");
+        DepositIntake rejected = queue(blocked, "10.00");
+        blocked.setStatus(CardStatus.BLOCKED);
+        cardRepository.save(blocked);
+
+        assertEquals(2, depositBatchJob.applyBatch());
+
+        assertEquals(DepositStatus.APPLIED, depositIntakeRepository.findById(applied.getId()).orElseThrow().getStatus());
+        DepositIntake reloaded = depositIntakeRepository.findById(rejected.getId()).orElseThrow();
+        assertEquals(DepositStatus.REJECTED, reloaded.getStatus());
+        assertNotNull(reloaded.getFailureReason());
+        assertEquals(0, BigDecimal.ZERO.compareTo(cardRepository.findById(blocked.getId()).orElseThrow().getBalance()));
+        assertEquals(1, ledgerEntryRepository.count());
+    }
+
+    private DepositIntake queue(Card card, String amount) {
+        return depositIntakeRepository.save(DepositIntake.builder()
+                .cardId(card.getId())
+                .ownerId(user.getId())
+                .amount(new BigDecimal(amount))
+                .status(DepositStatus.PENDING)
+                .build());
+    }
+
+    private Card saveCard(String number, CardStatus status) {
+        return cardRepository.save(Card.builder()
+                .owner(user)
+                .encryptedCardNumber(encryptionService.encrypt(number))
+                .cardNumberHash(cardNumberHashService.hash(number))
+                .last4(number.substring(12))
+                .expiryDate(LocalDate.now().plusYears(3))
+                .status(status)
+                .balance(BigDecimal.ZERO)
+                .build());
+    }
+}
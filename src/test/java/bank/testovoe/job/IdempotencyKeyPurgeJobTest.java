@@ -0,0 +1,69 @@
+package bank.testovoe.job;
+
+import bank.testovoe.model.IdempotencyKey;
+import bank.testovoe.repository.IdempotencyKeyRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "idempotency.purge.chunk-size=2")
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({SimpleMeterRegistry.class, IdempotencyKeyPurgeJob.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IdempotencyKeyPurgeJobTest {
+
+    @Autowired
+    private IdempotencyKeyPurgeJob idempotencyKeyPurgeJob;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyKeyRepository.deleteAll();
+    }
+
+    @Test
+    void purge_KeysOlderThanRetention_DeletedInChunks() {
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < 5; i++) {
+            saveKey("old-" + i, now.minusDays(2));
+        }
+        IdempotencyKey recent = saveKey("recent", now.minusMinutes(5));
+
+        assertEquals(5, idempotencyKeyPurgeJob.purge(now.minusDays(1)));
+        assertEquals(0, idempotencyKeyPurgeJob.purge(now.minusDays(1)));
+
+        assertEquals(1, idempotencyKeyRepository.count());
+        assertTrue(idempotencyKeyRepository.findByUserIdAndIdempotencyKey(1L, recent.getIdempotencyKey()).isPresent());
+    }
+
+    /**
+     * The entity stamps created_at on insert, so the row is aged afterwards.
+     */
+    private IdempotencyKey saveKey(String key, LocalDateTime createdAt) {
+        IdempotencyKey saved = idempotencyKeyRepository.save(IdempotencyKey.builder()
+                .userId(1L)
+                .idempotencyKey(key)
+                .requestHash(new byte[32])
+                .build());
+        jdbcTemplate.update("update idempotency_key set created_at = ? where id = ?", createdAt, saved.getId());
+        return saved;
+    }
+}
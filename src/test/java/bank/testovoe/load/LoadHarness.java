@@ -0,0 +1,351 @@
+package bank.testovoe.load;
+
+import bank.testovoe.TestovoeApplication;
+import bank.testovoe.model.Card;
+import bank.testovoe.model.CardStatus;
+import bank.testovoe.model.Role;
+import bank.testovoe.model.User;
+import bank.testovoe.repository.CardRepository;
+import bank.testovoe.repository.UserRepository;
+import bank.testovoe.service.CardNumberHashService;
+import bank.testovoe.service.EncryptionService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Boots the application on a random port against the in-memory H2 database of the {@code test}
+ * profile, seeds users and cards, and drives a weighted mix of requests through the real HTTP
+ * stack from {@code load.clients} concurrent clients. A share of the traffic ({@code
+ * load.hot-ratio}) goes to the cards of a few hot users to reproduce row contention.
+ * <p>
+ * Clients run closed-loop by default; with {@code load.rate} set they follow a fixed schedule and
+ * latency is measured from the intended start, so a stalled server is not hidden by clients that
+ * simply send less (coordinated omission). Prints per-interval figures for soak runs, writes a
+ * JSON report and compares it with a stored baseline; exits with 1 on a regression.
+ * <p>
+ * {@code mvn -Pload test -Dload.duration=10m -Dload.clients=64}
+ */
+public final class LoadHarness {
+
+    enum Operation {
+        LOGIN, CARDS, SEARCH, DEPOSIT, TRANSFER
+    }
+
+    private static final String PASSWORD = "load-test-password";
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000000.00");
+    private static final int SEED_CHUNK = 500;
+
+    private final int users = Integer.getInteger("load.users", 1000);
+    private final int cardsPerUser = Integer.getInteger("load.cards-per-user", 4);
+    private final int hotUsers = Integer.getInteger("load.hot-users", 2);
+    private final double hotRatio = Double.parseDouble(System.getProperty("load.hot-ratio", "0.3"));
+    private final int clients = Integer.getInteger("load.clients", 32);
+    private final double rate = Double.parseDouble(System.getProperty("load.rate", "0"));
+    private final Duration warmup = Duration.parse("PT" + System.getProperty("load.warmup", "15s"));
+    private final Duration duration = Duration.parse("PT" + System.getProperty("load.duration", "60s"));
+    private final Duration reportInterval = Duration.parse("PT" + System.getProperty("load.report-interval", "10s"));
+    private final String mix = System.getProperty("load.mix", "login:2,cards:30,search:20,deposit:13,transfer:35");
+    private final File reportFile = new File(System.getProperty("load.report", "target/load-report.json"));
+    private final File baselineFile = new File(System.getProperty("load.baseline", "load-baseline.json"));
+    private final double threshold = Double.parseDouble(System.getProperty("load.threshold", "20"));
+    private final boolean saveBaseline = Boolean.getBoolean("load.save-baseline");
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final LoadStats stats = new LoadStats();
+    private final Operation[] weightedOperations = parseMix(mix);
+
+    private String baseUrl;
+    private AtomicReferenceArray<String> tokens;
+    private volatile boolean running = true;
+
+    public static void main(String[] args) throws Exception {
+        System.exit(new LoadHarness().run());
+    }
+
+    private int run() throws Exception {
+        ConfigurableApplicationContext context = startApplication();
+        try {
+            baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+            seed(context);
+            tokens = new AtomicReferenceArray<>(users);
+            return drive(context.getBean(MeterRegistry.class));
+        } finally {
+            context.close();
+        }
+    }
+
+    private ConfigurableApplicationContext startApplication() {
+        SpringApplication application = new SpringApplication(TestovoeApplication.class);
+        application.setAdditionalProfiles("test");
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("server.port", 0);
+        properties.put("spring.datasource.hikari.maximum-pool-size", Integer.getInteger("load.db-pool", 10));
+        properties.put("spring.threads.virtual.enabled", Boolean.getBoolean("load.virtual-threads"));
+        // Every client logs in from localhost, and hot users are meant to be hammered
+        properties.put("security.login-throttle.max-per-ip", Integer.MAX_VALUE);
+        properties.put("rate-limit.enabled", false);
+        properties.put("logging.level.root", "WARN");
+        application.setDefaultProperties(properties);
+        return application.run();
+    }
+
+    private void seed(ConfigurableApplicationContext context) {
+        long started = System.nanoTime();
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        CardRepository cardRepository = context.getBean(CardRepository.class);
+        EncryptionService encryptionService = context.getBean(EncryptionService.class);
+        CardNumberHashService hashService = context.getBean(CardNumberHashService.class);
+        // One hash for every user: seeding 1000 users must not take 1000 BCrypt rounds
+        String passwordHash = new BCryptPasswordEncoder().encode(PASSWORD);
+        LocalDateTime now = LocalDateTime.now();
+
+        for (int from = 0; from < users; from += SEED_CHUNK) {
+            List<User> chunk = new ArrayList<>();
+            for (int u = from; u < Math.min(users, from + SEED_CHUNK); u++) {
+                chunk.add(User.builder().email(email(u)).password(passwordHash).role(Role.USER).build());
+            }
+            List<Card> cards = new ArrayList<>();
+            for (User user : userRepository.saveAll(chunk)) {
+                int u = userIndex(user.getEmail());
+                for (int c = 0; c < cardsPerUser; c++) {
+                    String number = cardNumber(u, c);
+                    cards.add(Card.builder()
+                            .owner(user)
+                            .encryptedCardNumber(encryptionService.encrypt(number))
+                            .cardNumberHash(hashService.hash(number))
+                            .last4(number.substring(12))
+                            .expiryDate(LocalDate.now().plusYears(3))
+                            .status(CardStatus.ACTIVE)
+                            .balance(INITIAL_BALANCE)
+                            .createdAt(now)
+                            .updatedAt(now)
+                            .build());
+                }
+            }
+            cardRepository.saveAll(cards);
+        }
+        System.out.printf("Seeded %d users and %d cards in %.1fs%n",
+                users, users * cardsPerUser, (System.nanoTime() - started) / 1e9);
+    }
+
+    private int drive(MeterRegistry meterRegistry) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        long intervalNanos = rate > 0 ? (long) (1e9 * clients / rate) : 0;
+        for (int i = 0; i < clients; i++) {
+            executor.submit(() -> client(intervalNanos));
+        }
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        System.out.printf("Warming up for %ss with %d clients%n", warmup.toSeconds(), clients);
+        Thread.sleep(warmup.toMillis());
+        stats.reset();
+        Timer acquire = meterRegistry.find("hikaricp.connections.acquire").timer();
+        long acquireCount = acquire == null ? 0 : acquire.count();
+        double acquireNanos = acquire == null ? 0 : acquire.totalTime(TimeUnit.NANOSECONDS);
+        long measureStart = System.nanoTime();
+        reporter.scheduleAtFixedRate(() -> printInterval(meterRegistry, measureStart),
+                reportInterval.toMillis(), reportInterval.toMillis(), TimeUnit.MILLISECONDS);
+
+        Thread.sleep(duration.toMillis());
+        running = false;
+        reporter.shutdownNow();
+        double seconds = (System.nanoTime() - measureStart) / 1e9;
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        ObjectNode report = stats.report(mapper, seconds);
+        if (acquire != null) {
+            long count = acquire.count() - acquireCount;
+            double waitNanos = acquire.totalTime(TimeUnit.NANOSECONDS) - acquireNanos;
+            ObjectNode db = report.putObject("dbConnectionWait");
+            db.put("acquisitions", count);
+            db.put("meanMs", count == 0 ? 0 : LoadStats.millis((long) (waitNanos / count)));
+            db.put("maxMs", acquire.max(TimeUnit.MILLISECONDS));
+            db.put("totalSeconds", waitNanos / 1e9);
+        }
+        reportFile.getAbsoluteFile().getParentFile().mkdirs();
+        mapper.writerWithDefaultPrettyPrinter().writeValue(reportFile, report);
+        printSummary(report);
+        return compareWithBaseline(report);
+    }
+
+    private void client(long intervalNanos) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long next = System.nanoTime();
+        while (running) {
+            long start;
+            if (intervalNanos > 0) {
+                next += intervalNanos;
+                LockSupport.parkNanos(next - System.nanoTime());
+                start = next - intervalNanos;
+            } else {
+                start = System.nanoTime();
+            }
+            Operation operation = weightedOperations[random.nextInt(weightedOperations.length)];
+            int user = random.nextDouble() < hotRatio ? random.nextInt(hotUsers) : random.nextInt(users);
+            int status;
+            try {
+                status = execute(operation, user, random);
+            } catch (Exception e) {
+                status = 0;
+            }
+            stats.record(operation, System.nanoTime() - start, status);
+        }
+    }
+
+    private int execute(Operation operation, int user, ThreadLocalRandom random) throws Exception {
+        return switch (operation) {
+            case LOGIN -> login(user).statusCode();
+            case CARDS -> send(user, HttpRequest.newBuilder(uri("/api/cards")).GET());
+            case SEARCH -> send(user, HttpRequest.newBuilder(uri("/api/cards/search?status=ACTIVE&minBalance=100&size=10")).GET());
+            case DEPOSIT -> send(user, HttpRequest.newBuilder(uri("/api/cards/deposit?cardNumber="
+                    + cardNumber(user, random.nextInt(cardsPerUser)) + "&amount=10.00"))
+                    .method("PATCH", HttpRequest.BodyPublishers.noBody()));
+            case TRANSFER -> {
+                int from = random.nextInt(cardsPerUser);
+                int to = (from + 1 + random.nextInt(cardsPerUser - 1)) % cardsPerUser;
+                String body = mapper.writeValueAsString(Map.of(
+                        "fromCardNumber", cardNumber(user, from),
+                        "toCardNumber", cardNumber(user, to),
+                        "amount", "1.00"));
+                yield send(user, HttpRequest.newBuilder(uri("/api/transfer"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body)));
+            }
+        };
+    }
+
+    private int send(int user, HttpRequest.Builder request) throws Exception {
+        String token = tokens.get(user);
+        if (token == null) {
+            login(user);
+            token = tokens.get(user);
+        }
+        return http.send(request.header("Authorization", "Bearer " + token).build(),
+                HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private HttpResponse<String> login(int user) throws Exception {
+        String body = mapper.writeValueAsString(Map.of("email", email(user), "password", PASSWORD));
+        HttpResponse<String> response = http.send(HttpRequest.newBuilder(uri("/api/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() == 200) {
+            tokens.set(user, mapper.readTree(response.body()).path("token").asText());
+        }
+        return response;
+    }
+
+    private void printInterval(MeterRegistry meterRegistry, long measureStart) {
+        Histogram interval = stats.drainInterval();
+        double seconds = reportInterval.toMillis() / 1000.0;
+        Double pending = meterRegistry.find("hikaricp.connections.pending").gauge() == null
+                ? null : meterRegistry.find("hikaricp.connections.pending").gauge().value();
+        Runtime runtime = Runtime.getRuntime();
+        System.out.printf("[%4ds] %8.1f req/s  p50 %7.2fms  p99 %7.2fms  p99.9 %7.2fms  db pending %s  heap %dMB%n",
+                (System.nanoTime() - measureStart) / 1_000_000_000,
+                interval.getTotalCount() / seconds,
+                LoadStats.millis(interval.getValueAtPercentile(50)),
+                LoadStats.millis(interval.getValueAtPercentile(99)),
+                LoadStats.millis(interval.getValueAtPercentile(99.9)),
+                pending == null ? "-" : String.valueOf(pending.intValue()),
+                (runtime.totalMemory() - runtime.freeMemory()) >> 20);
+    }
+
+    private void printSummary(JsonNode report) {
+        System.out.printf("%n%-10s %9s %10s %9s %9s %9s %8s%n", "operation", "count", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "errors");
+        report.path("operations").fields().forEachRemaining(entry -> {
+            JsonNode op = entry.getValue();
+            System.out.printf("%-10s %9d %10.1f %9.2f %9.2f %9.2f %7.2f%% %s%n", entry.getKey(),
+                    op.path("count").asLong(), op.path("throughput").asDouble(), op.path("p50Ms").asDouble(),
+                    op.path("p99Ms").asDouble(), op.path("p999Ms").asDouble(), op.path("errorRate").asDouble() * 100,
+                    op.path("errors").isEmpty() ? "" : op.path("errors"));
+        });
+        JsonNode db = report.path("dbConnectionWait");
+        if (!db.isMissingNode()) {
+            System.out.printf("DB connection wait: %d acquisitions, mean %.3fms, max %.2fms, total %.2fs%n",
+                    db.path("acquisitions").asLong(), db.path("meanMs").asDouble(),
+                    db.path("maxMs").asDouble(), db.path("totalSeconds").asDouble());
+        }
+        System.out.println("Report written to " + reportFile);
+    }
+
+    private int compareWithBaseline(JsonNode report) throws Exception {
+        if (saveBaseline) {
+            mapper.writerWithDefaultPrettyPrinter().writeValue(baselineFile, report);
+            System.out.println("Baseline saved to " + baselineFile);
+            return 0;
+        }
+        if (!baselineFile.exists()) {
+            System.out.println("No baseline at " + baselineFile + ", run with -Dload.save-baseline=true to store one");
+            return 0;
+        }
+        List<String> regressions = LoadStats.regressions(mapper.readTree(baselineFile), report, threshold);
+        if (regressions.isEmpty()) {
+            System.out.printf("No regressions against %s (threshold %.0f%%)%n", baselineFile, threshold);
+            return 0;
+        }
+        System.out.println("REGRESSIONS against " + baselineFile + ":");
+        regressions.forEach(line -> System.out.println("  " + line));
+        return 1;
+    }
+
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+
+    private static Operation[] parseMix(String mix) {
+        List<Operation> weighted = new ArrayList<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            Operation operation = Operation.valueOf(parts[0].trim().toUpperCase());
+            for (int i = Integer.parseInt(parts[1].trim()); i > 0; i--) {
+                weighted.add(operation);
+            }
+        }
+        return weighted.toArray(Operation[]::new);
+    }
+
+    private static String email(int user) {
+        return "load" + user + "@test.com";
+    }
+
+    private static int userIndex(String email) {
+        return Integer.parseInt(email.substring(4, email.indexOf('@')));
+    }
+
+    private static String cardNumber(int user, int card) {
+        return String.format("5%09d%06d", user, card);
+    }
+}
@@ -0,0 +1,134 @@
+package bank.testovoe.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and error bookkeeping for {@link LoadHarness}. Recording goes through HdrHistogram
+ * recorders, so client threads never contend on a shared histogram and interval snapshots can be
+ * taken while the run is going.
+ */
+class LoadStats {
+
+    private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final Map<LoadHarness.Operation, OperationStats> operations = new EnumMap<>(LoadHarness.Operation.class);
+
+    LoadStats() {
+        for (LoadHarness.Operation operation : LoadHarness.Operation.values()) {
+            operations.put(operation, new OperationStats());
+        }
+    }
+
+    void record(LoadHarness.Operation operation, long latencyNanos, int status) {
+        OperationStats stats = operations.get(operation);
+        stats.interval.recordValue(Math.min(latencyNanos, MAX_LATENCY_NANOS));
+        if (status < 200 || status >= 300) {
+            stats.errors.computeIfAbsent(status, s -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * Moves what was recorded since the previous call into the run totals and returns it, so the
+     * caller can print per-interval figures during a soak.
+     */
+    synchronized Histogram drainInterval() {
+        Histogram all = new Histogram(MAX_LATENCY_NANOS, 3);
+        for (OperationStats stats : operations.values()) {
+            Histogram interval = stats.interval.getIntervalHistogram();
+            stats.total.add(interval);
+            all.add(interval);
+        }
+        return all;
+    }
+
+    /**
+     * Forgets everything recorded so far; called when the warmup ends.
+     */
+    synchronized void reset() {
+        drainInterval();
+        for (OperationStats stats : operations.values()) {
+            stats.total.reset();
+            stats.errors.clear();
+        }
+    }
+
+    synchronized ObjectNode report(ObjectMapper mapper, double seconds) {
+        drainInterval();
+        ObjectNode report = mapper.createObjectNode();
+        report.put("durationSeconds", seconds);
+        ObjectNode byOperation = report.putObject("operations");
+        operations.forEach((operation, stats) -> {
+            long count = stats.total.getTotalCount();
+            if (count == 0) {
+                return;
+            }
+            long errors = stats.errors.values().stream().mapToLong(LongAdder::sum).sum();
+            ObjectNode node = byOperation.putObject(operation.name().toLowerCase());
+            node.put("count", count);
+            node.put("throughput", count / seconds);
+            node.put("p50Ms", millis(stats.total.getValueAtPercentile(50)));
+            node.put("p99Ms", millis(stats.total.getValueAtPercentile(99)));
+            node.put("p999Ms", millis(stats.total.getValueAtPercentile(99.9)));
+            node.put("maxMs", millis(stats.total.getMaxValue()));
+            node.put("errorRate", (double) errors / count);
+            ObjectNode statuses = node.putObject("errors");
+            stats.errors.forEach((status, n) -> statuses.put(String.valueOf(status), n.sum()));
+        });
+        return report;
+    }
+
+    /**
+     * Compares a run against a stored one and returns a line per regression: p99/p999 latency or
+     * throughput worse by more than {@code thresholdPercent}, or an error rate more than one
+     * percentage point higher.
+     */
+    static List<String> regressions(JsonNode baseline, JsonNode current, double thresholdPercent) {
+        List<String> regressions = new ArrayList<>();
+        double factor = 1 + thresholdPercent / 100;
+        current.path("operations").fields().forEachRemaining(entry -> {
+            String operation = entry.getKey();
+            JsonNode before = baseline.path("operations").path(operation);
+            JsonNode after = entry.getValue();
+            if (before.isMissingNode()) {
+                return;
+            }
+            for (String latency : List.of("p99Ms", "p999Ms")) {
+                if (after.path(latency).asDouble() > before.path(latency).asDouble() * factor) {
+                    regressions.add(String.format("%s %s: %.2f -> %.2f", operation, latency,
+                            before.path(latency).asDouble(), after.path(latency).asDouble()));
+                }
+            }
+            if (after.path("throughput").asDouble() * factor < before.path("throughput").asDouble()) {
+                regressions.add(String.format("%s throughput: %.1f/s -> %.1f/s", operation,
+                        before.path("throughput").asDouble(), after.path("throughput").asDouble()));
+            }
+            if (after.path("errorRate").asDouble() > before.path("errorRate").asDouble() + 0.01) {
+                regressions.add(String.format("%s error rate: %.2f%% -> %.2f%%", operation,
+                        before.path("errorRate").asDouble() * 100, after.path("errorRate").asDouble() * 100));
+            }
+        });
+        return regressions;
+    }
+
+    static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static final class OperationStats {
+        final Recorder interval = new Recorder(MAX_LATENCY_NANOS, 3);
+        final Histogram total = new Histogram(MAX_LATENCY_NANOS, 3);
+        final Map<Integer, LongAdder> errors = new ConcurrentHashMap<>();
+    }
+}
@@ -0,0 +1,59 @@
+package bank.testovoe.mapper;
+
+import bank.testovoe.dto.card.CardDto;
+import bank.testovoe.model.Card;
+import bank.testovoe.model.CardStatus;
+import bank.testovoe.service.EncryptionService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CardMapperTest {
+
+    @Mock
+    private EncryptionService encryptionService;
+
+    @InjectMocks
+    private CardMapper cardMapper;
+
+    @Test
+    void toDto_Last4Stored_MasksWithoutDecrypting() {
+        Card card = card("encrypted", "8137");
+
+        CardDto dto = cardMapper.toDto(card);
+
+        assertEquals("**** **** **** 8137", dto.maskedCardNumber());
+        verify(encryptionService, never()).decrypt(anyString());
+    }
+
+    @Test
+    void toDto_Last4NotBackfilled_DecryptsNumber() {
+        Card card = card("encrypted", null);
+        when(encryptionService.decrypt("encrypted")).thenReturn("6171053773368137");
+
+        CardDto dto = cardMapper.toDto(card);
+
+        assertEquals("**** **** **** 8137", dto.maskedCardNumber());
+    }
+
+    private Card card(String encryptedCardNumber, String last4) {
+        return Card.builder()
+                .id(1L)
+                .encryptedCardNumber(encryptedCardNumber)
+                .last4(last4)
+                .expiryDate(LocalDate.now().plusYears(3))
+                .status(CardStatus.ACTIVE)
+                .balance(BigDecimal.TEN)
+                .build();
+    }
+}
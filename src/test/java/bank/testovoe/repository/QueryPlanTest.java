@@ -0,0 +1,251 @@
+package bank.testovoe.repository;
+
+import bank.testovoe.config.CardSpecification;
+import bank.testovoe.job.CardExpiryJob;
+import bank.testovoe.model.CardStatus;
+import bank.testovoe.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@code EXPLAIN} for the hot card and transfer queries against the Liquibase schema on H2
+ * (PostgreSQL mode) and fails when one of them no longer resolves through its index. Each case
+ * calls the real repository method or job, records the statements it sends to the database and
+ * explains the first query among them, with sample values bound to its parameters.
+ * <p>
+ * H2 backs every foreign key with an index of its own while PostgreSQL does not, so the foreign
+ * keys are dropped first; otherwise H2 would happily use indexes that do not exist in production.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DirtiesContext
+class QueryPlanTest {
+
+    private static final List<String> STATEMENTS = new ArrayList<>();
+
+    private static final User OWNER = User.builder().id(1L).build();
+    private static final LocalDateTime FROM = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransferRepository transferRepository;
+
+    @BeforeEach
+    void dropForeignKeyIndexes() {
+        jdbcTemplate.execute("alter table transfer drop constraint if exists fk_transfer_from_card");
+        jdbcTemplate.execute("alter table transfer drop constraint if exists fk_transfer_to_card");
+        jdbcTemplate.execute("alter table card drop constraint if exists fk_card_user");
+    }
+
+    static Stream<Arguments> hotQueries() {
+        Sort newestFirst = Sort.by(Sort.Direction.DESC, "createdAt");
+        return Stream.of(
+                Arguments.of("findByOwner",
+                        query(test -> test.cardRepository.findByOwner(OWNER)),
+                        "idx_card_owner_"),
+                Arguments.of("card list of a user (findSummariesByOwner)",
+                        query(test -> test.cardRepository.findSummariesByOwner(OWNER)),
+                        "idx_card_owner_"),
+                Arguments.of("own card ids for transfer history (findIdsByOwner)",
+                        query(test -> test.cardRepository.findIdsByOwner(OWNER)),
+                        "idx_card_owner_"),
+                Arguments.of("searchCards by owner and status, newest first",
+                        query(test -> test.cardRepository.findPageContent(
+                                CardSpecification.ownerIs(OWNER).and(CardSpecification.statusIs(CardStatus.ACTIVE)),
+                                PageRequest.of(0, 10, newestFirst))),
+                        "idx_card_owner_status_created"),
+                Arguments.of("searchCards by owner, newest first",
+                        query(test -> test.cardRepository.findPageContent(
+                                Specification.where(CardSpecification.ownerIs(OWNER)), PageRequest.of(0, 10, newestFirst))),
+                        "idx_card_owner_created"),
+                Arguments.of("findByCardNumberHash",
+                        query(test -> test.cardRepository.findByCardNumberHash(new byte[32])),
+                        "uq_card_number_hash"),
+                Arguments.of("admin listing after cursor",
+                        query(test -> test.cardRepository.findSummariesAfterId(100L, Limit.of(51))),
+                        "primary_key"),
+                Arguments.of("expiry job chunk",
+                        query(test -> test.expiryJob().expire(LocalDate.of(2024, 1, 1))),
+                        "idx_card_expiry_date_status"),
+                Arguments.of("outgoing transfers of a card",
+                        query(test -> test.transferRepository.findOutgoingHistory(
+                                1L, FROM, LocalDateTime.now(), Long.MAX_VALUE, Limit.of(20))),
+                        "idx_transfer_from_card_timestamp"),
+                Arguments.of("incoming transfers of a card",
+                        query(test -> test.transferRepository.findIncomingHistory(
+                                1L, FROM, LocalDateTime.now(), Long.MAX_VALUE, Limit.of(20))),
+                        "idx_transfer_to_card_timestamp")
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hotQueries")
+    void hotQuery_UsesIndex(String name, Consumer<QueryPlanTest> call, String expectedIndex) {
+        String sql = capture(call);
+        String plan = explain(sql).toLowerCase();
+
+        assertFalse(plan.contains("tablescan"), () -> name + " scans the table:\n" + plan);
+        assertTrue(plan.contains(expectedIndex), () -> name + " does not use " + expectedIndex + ":\n" + plan);
+    }
+
+    private static Consumer<QueryPlanTest> query(Consumer<QueryPlanTest> call) {
+        return call;
+    }
+
+    private CardExpiryJob expiryJob() {
+        return new CardExpiryJob(namedParameterJdbcTemplate, transactionTemplate, new JobLeaseRepository(jdbcTemplate),
+                event -> { }, 500, Duration.ofMinutes(5), new SimpleMeterRegistry());
+    }
+
+    /**
+     * @return the first query {@code call} sent to the database
+     */
+    private String capture(Consumer<QueryPlanTest> call) {
+        synchronized (STATEMENTS) {
+            STATEMENTS.clear();
+        }
+        call.accept(this);
+        synchronized (STATEMENTS) {
+            String sql = STATEMENTS.stream()
+                    .filter(statement -> statement.stripLeading().toLowerCase().startsWith("select"))
+                    .findFirst()
+                    .orElse(null);
+            assertNotNull(sql, () -> "No query among " + STATEMENTS);
+            return sql;
+        }
+    }
+
+    private String explain(String sql) {
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement("explain " + sql);
+            bindSampleValues(statement);
+            return statement;
+        }, rs -> rs.next() ? rs.getString(1) : null);
+    }
+
+    /**
+     * The plan does not depend on the values, only on the columns they are compared with, so any
+     * value of the parameter's type will do.
+     */
+    private static void bindSampleValues(PreparedStatement statement) throws SQLException {
+        ParameterMetaData parameters = statement.getParameterMetaData();
+        for (int i = 1; i <= parameters.getParameterCount(); i++) {
+            switch (parameters.getParameterType(i)) {
+                case Types.VARCHAR, Types.CHAR -> statement.setString(i, CardStatus.ACTIVE.name());
+                case Types.BINARY, Types.VARBINARY -> statement.setBytes(i, new byte[32]);
+                case Types.DATE -> statement.setDate(i, Date.valueOf(FROM.toLocalDate()));
+                case Types.TIMESTAMP -> statement.setTimestamp(i, Timestamp.valueOf(FROM));
+                case Types.NUMERIC, Types.DECIMAL -> statement.setBigDecimal(i, BigDecimal.ONE);
+                default -> statement.setLong(i, 1);
+            }
+        }
+    }
+
+    /**
+     * Records the SQL of every statement prepared through the application's data source, whether
+     * it comes from Hibernate or from a {@link JdbcTemplate}.
+     */
+    @TestConfiguration
+    static class RecordingDataSourceConfig {
+
+        @Bean
+        static BeanPostProcessor recordingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? new RecordingDataSource(dataSource) : bean;
+                }
+            };
+        }
+    }
+
+    private static class RecordingDataSource extends DelegatingDataSource {
+
+        RecordingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return record(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return record(super.getConnection(username, password));
+        }
+
+        private static Connection record(Connection connection) {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().startsWith("prepare") && args != null && args[0] instanceof String sql) {
+                            synchronized (STATEMENTS) {
+                                STATEMENTS.add(sql);
+                            }
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package bank.testovoe.service.impl;
+
+import bank.testovoe.dto.card.CardIssuanceResult;
+import bank.testovoe.job.CardBackfillJob;
+import bank.testovoe.model.Card;
+import bank.testovoe.model.CardStatus;
+import bank.testovoe.model.Role;
+import bank.testovoe.model.User;
+import bank.testovoe.repository.CardIssuanceRepository;
+import bank.testovoe.repository.CardRepository;
+import bank.testovoe.repository.UserRepository;
+import bank.testovoe.service.CardIssuanceService;
+import bank.testovoe.service.CardNumberHashService;
+import bank.testovoe.service.EncryptionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "cards.issuance.chunk-size=3")
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({SimpleMeterRegistry.class, CardIssuanceServiceImpl.class, CardIssuanceRepository.class, EncryptionServiceImpl.class,
+        CardNumberHashServiceImpl.class, CardBackfillJob.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CardIssuanceServiceImplTest {
+
+    private static final String EXISTING = "7300000000000009";
+
+    @Autowired
+    private CardIssuanceService cardIssuanceService;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private CardNumberHashService cardNumberHashService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        cardRepository.deleteAll();
+        userRepository.deleteAll();
+        user = userRepository.save(User.builder().email("bulk@test.com").password("x").role(Role.USER).build());
+        cardRepository.save(Card.builder()
+                .owner(user)
+                .encryptedCardNumber(encryptionService.encrypt(EXISTING))
+                .cardNumberHash(cardNumberHashService.hash(EXISTING))
+                .last4(EXISTING.substring(12))
+                .expiryDate(LocalDate.now().plusYears(3))
+                .status(CardStatus.ACTIVE)
+                .balance(BigDecimal.ZERO)
+                .build());
+    }
+
+    @Test
+    void issue_MixedFile_ReportsEveryLineInOrder() throws IOException {
+        long id = user.getId();
+        String csv = String.join("\n",
+                "userId,cardNumber,expiryDate",
+                id + ",7300000000000001,2030-01-31",
+                id + ",7300000000000002,2030-01-31",
+                id + ",7300000000000001,2030-01-31",
+                "999999,7300000000000003,2030-01-31",
+                id + ",12345,2030-01-31",
+                "",
+                id + "," + EXISTING + ",2030-01-31",
+                id + ",7300000000000002,2030-01-31",
+                id + ",7300000000000004,31.01.2030",
+                id + ",7300000000000005",
+                id + ",7300000000000008," + LocalDate.now().minusDays(1));
+        List<CardIssuanceResult> report = new ArrayList<>();
+
+        cardIssuanceService.issue(new StringReader(csv), report::add);
+
+        assertEquals(List.of(2L, 3L, 4L, 5L, 6L, 8L, 9L, 10L, 11L, 12L),
+                report.stream().map(CardIssuanceResult::line).toList());
+        assertNotNull(report.get(0).cardId());
+        assertNotNull(report.get(1).cardId());
+        assertEquals("Duplicate card number in file", report.get(2).error());
+        assertEquals("User not found", report.get(3).error());
+        assertEquals("Card number must be 16 digits", report.get(4).error());
+        assertEquals("Card already exists", report.get(5).error());
+        assertEquals("Card already exists", report.get(6).error());
+        assertEquals("Expiry date must be yyyy-MM-dd", report.get(7).error());
+        assertEquals("Expected userId,cardNumber,expiryDate", report.get(8).error());
+        assertEquals("Expiry date is in the past", report.get(9).error());
+
+        Card issued = cardRepository.findById(report.get(0).cardId()).orElseThrow();
+        assertEquals(CardStatus.ACTIVE, issued.getStatus());
+        assertEquals("0001", issued.getLast4());
+        assertEquals(LocalDate.of(2030, 1, 31), issued.getExpiryDate());
+        assertEquals("7300000000000001", encryptionService.decrypt(issued.getEncryptedCardNumber()));
+        assertEquals(3, cardRepository.count());
+    }
+
+    @Test
+    void issue_IdsDoNotCollideWithJpaInserts() throws IOException {
+        List<CardIssuanceResult> report = new ArrayList<>();
+        cardIssuanceService.issue(new StringReader(user.getId() + ",7300000000000006,2030-01-31"), report::add);
+
+        Card saved = cardRepository.save(Card.builder()
+                .owner(user)
+                .encryptedCardNumber(encryptionService.encrypt("7300000000000007"))
+                .cardNumberHash(cardNumberHashService.hash("7300000000000007"))
+                .last4("0007")
+                .expiryDate(LocalDate.now().plusYears(3))
+                .status(CardStatus.ACTIVE)
+                .balance(BigDecimal.ZERO)
+                .build());
+
+        assertNotNull(report.get(0).cardId());
+        assertNotEquals(report.get(0).cardId(), saved.getId());
+        assertEquals(3, cardRepository.count());
+    }
+}
@@ -0,0 +1,174 @@
+package bank.testovoe.service.impl;
+
+import bank.testovoe.config.CardCountCache;
+import bank.testovoe.dto.KeysetPage;
+import bank.testovoe.dto.card.CardDto;
+import bank.testovoe.job.CardBackfillJob;
+import bank.testovoe.mapper.CardMapper;
+import bank.testovoe.model.Card;
+import bank.testovoe.model.CardStatus;
+import bank.testovoe.model.Role;
+import bank.testovoe.model.User;
+import bank.testovoe.repository.CardBalanceStripeRepository;
+import bank.testovoe.repository.CardRepository;
+import bank.testovoe.repository.TransferRepository;
+import bank.testovoe.repository.UserRepository;
+import bank.testovoe.service.CardNumberHashService;
+import bank.testovoe.service.CardService;
+import bank.testovoe.service.EncryptionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Counts the JDBC statements behind the card listing endpoints, including the mapping to
+ * {@link CardDto}. Each call runs in a transaction like under open-session-in-view, so any lazy
+ * association touched while mapping shows up as extra statements instead of an exception.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({SimpleMeterRegistry.class, CardServiceImpl.class, LedgerServiceImpl.class, BalanceStripeServiceImpl.class, CardBalanceStripeRepository.class, CardMapper.class, EncryptionServiceImpl.class, CardNumberHashServiceImpl.class,
+        CardBackfillJob.class, CardCountCache.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CardServiceImplQueryCountTest {
+
+    private static final int CARDS_PER_USER = 6;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private CardMapper cardMapper;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private CardNumberHashService cardNumberHashService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransferRepository transferRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        transferRepository.deleteAll();
+        cardRepository.deleteAll();
+        userRepository.deleteAll();
+
+        user = userRepository.save(User.builder().email("owner@test.com").password("x").role(Role.USER).build());
+        User other = userRepository.save(User.builder().email("other@test.com").password("x").role(Role.USER).build());
+        for (int i = 0; i < CARDS_PER_USER; i++) {
+            saveCard(user, String.format("80000000000000%02d", i));
+            saveCard(other, String.format("81000000000000%02d", i));
+        }
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void getCardsForUser_IsOneStatement() {
+        List<CardDto> cards = countStatements(1, () -> cardService.getCardsForUser(user).stream()
+                .map(cardMapper::toDto)
+                .toList());
+
+        assertEquals(CARDS_PER_USER, cards.size());
+    }
+
+    @Test
+    void getAllCards_IsOneStatement() {
+        List<CardDto> cards = countStatements(1, () -> cardService.getAllCards(null, 100).stream()
+                .map(cardMapper::toDto)
+                .toList());
+
+        assertEquals(2 * CARDS_PER_USER, cards.size());
+    }
+
+    @Test
+    void searchCards_IsSelectAndCount() {
+        PageRequest pageable = PageRequest.of(0, 4, Sort.by(Sort.Direction.DESC, "createdAt"));
+
+        List<CardDto> cards = countStatements(2, () -> cardService
+                .searchCards(user, CardStatus.ACTIVE, null, null, pageable)
+                .map(cardMapper::toDto)
+                .getContent());
+
+        assertEquals(4, cards.size());
+    }
+
+    @Test
+    void scrollCards_IsOneStatementPerPageWithoutCount() {
+        KeysetPage<Card> first = countStatements(1, () -> cardService.scrollCards(user, null, null, null, null, 4));
+        KeysetPage<Card> second = countStatements(1,
+                () -> cardService.scrollCards(user, null, null, null, first.nextCursor(), 4));
+
+        assertEquals(4, first.content().size());
+        assertEquals(2, second.content().size());
+        assertFalse(second.hasNext());
+        assertTrue(first.content().get(3).getCreatedAt().isAfter(second.content().get(0).getCreatedAt())
+                || first.content().get(3).getId() > second.content().get(0).getId());
+    }
+
+    @Test
+    void getByIdAndUser_DoesNotLoadOwner() {
+        Long cardId = cardRepository.findIdsByOwner(user).get(0);
+
+        CardDto card = countStatements(1, () -> cardMapper.toDto(cardService.getByIdAndUser(cardId, user)));
+
+        assertEquals(cardId, card.id());
+    }
+
+    private <T> T countStatements(int expected, Supplier<T> action) {
+        statistics.clear();
+        T result = transactionTemplate.execute(status -> action.get());
+        assertEquals(expected, statistics.getPrepareStatementCount(), "JDBC statements executed");
+        return result;
+    }
+
+    private void saveCard(User owner, String number) {
+        cardRepository.save(Card.builder()
+                .owner(owner)
+                .encryptedCardNumber(encryptionService.encrypt(number))
+                .cardNumberHash(cardNumberHashService.hash(number))
+                .last4(number.substring(12))
+                .expiryDate(LocalDate.now().plusYears(3))
+                .status(CardStatus.ACTIVE)
+                .balance(BigDecimal.TEN)
+                .build());
+    }
+}
@@ -1,32 +1,45 @@
 package bank.testovoe.service.impl;
 
+import bank.testovoe.config.CardCache;
+import bank.testovoe.config.CardCountCache;
+import bank.testovoe.dto.KeysetCursor;
+import bank.testovoe.dto.KeysetPage;
+import bank.testovoe.dto.card.CardSummary;
 import bank.testovoe.exception.ForbiddenOperationException;
 import bank.testovoe.exception.NotFoundException;
+import bank.testovoe.job.CardBackfillJob;
 import bank.testovoe.model.Card;
 import bank.testovoe.model.CardStatus;
 import bank.testovoe.model.Role;
 import bank.testovoe.model.User;
 import bank.testovoe.repository.CardRepository;
+import bank.testovoe.repository.DepositIntakeRepository;
+import bank.testovoe.service.BalanceStripeService;
+import bank.testovoe.service.CardNumberHashService;
 import bank.testovoe.service.EncryptionService;
+import bank.testovoe.service.LedgerService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -38,6 +51,27 @@ class CardServiceImplTest {
     @Mock
     private EncryptionService encryptionService;
 
+    @Mock
+    private CardNumberHashService cardNumberHashService;
+
+    @Mock
+    private CardBackfillJob cardBackfillJob;
+
+    @Mock
+    private CardCountCache cardCountCache;
+
+    @Mock
+    private LedgerService ledgerService;
+
+    @Mock
+    private BalanceStripeService balanceStripeService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private DepositIntakeRepository depositIntakeRepository;
+
     @InjectMocks
     private CardServiceImpl cardService;
 
@@ -46,15 +80,18 @@ class CardServiceImplTest {
     private Card card;
     private final String cardNumber = "1234567890123456";
     private final String encryptedCardNumber = "encrypted1234567890123456";
+    private final byte[] cardNumberHash = {1, 2, 3, 4};
 
     @BeforeEach
     void setUp() {
+        lenient().when(cardBackfillJob.isComplete()).thenReturn(true);
         user = User.builder().email("user@test.com").role(Role.USER).build();
         admin = User.builder().email("admin@test.com").role(Role.ADMIN).build();
         card = Card.builder()
                 .id(1L)
                 .owner(user)
                 .encryptedCardNumber(encryptedCardNumber)
+                .cardNumberHash(cardNumberHash)
                 .expiryDate(LocalDate.now().plusYears(3))
                 .status(CardStatus.ACTIVE)
                 .balance(BigDecimal.ZERO)
@@ -63,24 +100,34 @@ class CardServiceImplTest {
 
     @Test
     void getCardsForUser_UserRole_ReturnsUserCards() {
-        when(cardRepository.findByOwner(user)).thenReturn(List.of(card));
+        CardSummary summary = summaryOf(card);
+        when(cardRepository.findSummariesByOwner(user)).thenReturn(List.of(summary));
 
-        List<Card> result = cardService.getCardsForUser(user);
+        List<CardSummary> result = cardService.getCardsForUser(user);
 
-        assertEquals(1, result.size());
-        assertEquals(card, result.get(0));
-        verify(cardRepository).findByOwner(user);
+        assertEquals(List.of(summary), result);
+        verify(cardRepository).findSummariesByOwner(user);
     }
 
     @Test
-    void getCardsForUser_AdminRole_ReturnsAllCards() {
-        when(cardRepository.findAll()).thenReturn(List.of(card));
+    void getCardsForUser_AdminRole_ReturnsOnlyOwnCards() {
+        when(cardRepository.findSummariesByOwner(admin)).thenReturn(List.of());
 
-        List<Card> result = cardService.getCardsForUser(admin);
+        List<CardSummary> result = cardService.getCardsForUser(admin);
 
-        assertEquals(1, result.size());
-        assertEquals(card, result.get(0));
-        verify(cardRepository).findAll();
+        assertTrue(result.isEmpty());
+        verify(cardRepository, never()).findAll();
+    }
+
+    @Test
+    void getAllCards_WithCursor_ReturnsCardsAfterId() {
+        CardSummary summary = summaryOf(card);
+        when(cardRepository.findSummariesAfterId(0L, Limit.of(51))).thenReturn(List.of(summary));
+
+        List<CardSummary> result = cardService.getAllCards(null, 51);
+
+        assertEquals(List.of(summary), result);
+        verify(cardRepository).findSummariesAfterId(0L, Limit.of(51));
     }
 
     @Test
@@ -106,163 +153,183 @@ class CardServiceImplTest {
     @Test
     void createCard_NewCard_SuccessfullyCreated() {
         LocalDate expiryDate = LocalDate.now().plusYears(3);
+        when(cardNumberHashService.hash(cardNumber)).thenReturn(cardNumberHash);
         when(encryptionService.encrypt(cardNumber)).thenReturn(encryptedCardNumber);
-        when(cardRepository.existsByEncryptedCardNumber(encryptedCardNumber)).thenReturn(false);
+        when(cardRepository.existsByCardNumberHash(cardNumberHash)).thenReturn(false);
         when(cardRepository.save(any(Card.class))).thenReturn(card);
 
         Card result = cardService.createCard(user, cardNumber, expiryDate);
 
         assertEquals(user, result.getOwner());
         assertEquals(CardStatus.ACTIVE, result.getStatus());
-        verify(encryptionService).encrypt(cardNumber);
-        verify(cardRepository).existsByEncryptedCardNumber(encryptedCardNumber);
-        verify(cardRepository).save(any(Card.class));
+        verify(cardNumberHashService).hash(cardNumber);
+        verify(cardRepository).existsByCardNumberHash(cardNumberHash);
+        verify(cardRepository).save(argThat(saved -> saved.getCardNumberHash() == cardNumberHash));
     }
 
     @Test
     void createCard_CardExists_ThrowsForbiddenOperationException() {
+        when(cardNumberHashService.hash(cardNumber)).thenReturn(cardNumberHash);
         when(encryptionService.encrypt(cardNumber)).thenReturn(encryptedCardNumber);
-        when(cardRepository.existsByEncryptedCardNumber(encryptedCardNumber)).thenReturn(true);
+        when(cardRepository.existsByCardNumberHash(cardNumberHash)).thenReturn(true);
 
         assertThrows(ForbiddenOperationException.class, () -> cardService.createCard(user, cardNumber, LocalDate.now()));
-        verify(encryptionService).encrypt(cardNumber);
-        verify(cardRepository).existsByEncryptedCardNumber(encryptedCardNumber);
+        verify(cardRepository).existsByCardNumberHash(cardNumberHash);
         verify(cardRepository, never()).save(any(Card.class));
     }
 
     @Test
     void blockCard_CardExists_SuccessfullyBlocked() {
-        when(encryptionService.encrypt(cardNumber)).thenReturn(encryptedCardNumber);
-        when(cardRepository.findByEncryptedCardNumberAndOwner(encryptedCardNumber, user)).thenReturn(Optional.of(card));
+        when(cardNumberHashService.hash(cardNumber)).thenReturn(cardNumberHash);
+        when(cardRepository.findByCardNumberHashAndOwner(cardNumberHash, user)).thenReturn(Optional.of(card));
 
         cardService.blockCard(cardNumber, user);
 
         assertEquals(CardStatus.BLOCKED, card.getStatus());
-        verify(encryptionService).encrypt(cardNumber);
-        verify(cardRepository).findByEncryptedCardNumberAndOwner(encryptedCardNumber, user);
+        verify(cardNumberHashService).hash(cardNumber);
+        verify(cardRepository).findByCardNumberHashAndOwner(cardNumberHash, user);
         verify(cardRepository).save(card);
     }
 
     @Test
     void blockCard_CardNotFound_ThrowsNotFoundException() {
-        when(encryptionService.encrypt(cardNumber)).thenReturn(encryptedCardNumber);
-        when(cardRepository.findByEncryptedCardNumberAndOwner(encryptedCardNumber, user)).thenReturn(Optional.empty());
+        when(cardNumberHashService.hash(cardNumber)).thenReturn(cardNumberHash);
+        when(cardRepository.findByCardNumberHashAndOwner(cardNumberHash, user)).thenReturn(Optional.empty());
 
         assertThrows(NotFoundException.class, () -> cardService.blockCard(cardNumber, user));
-        verify(encryptionService).encrypt(cardNumber);
-        verify(cardRepository).findByEncryptedCardNumberAndOwner(encryptedCardNumber, user);
+        verify(cardNumberHashService).hash(cardNumber);
+        verify(cardRepository).findByCardNumberHashAndOwner(cardNumberHash, user);
         verify(cardRepository, never()).save(any(Card.class));
     }
 
     @Test
     void blockCard_AlreadyBlocked_ThrowsForbiddenOperationException() {
         card.setStatus(CardStatus.BLOCKED);
-        when(encryptionService.encrypt(cardNumber)).thenReturn(encryptedCardNumber);
-        when(cardRepository.findByEncryptedCardNumberAndOwner(encryptedCardNumber, user)).thenReturn(Optional.of(card));
+        when(cardNumberHashService.hash(cardNumber)).thenReturn(cardNumberHash);
+        when(cardRepository.findByCardNumberHashAndOwner(cardNumberHash, user)).thenReturn(Optional.of(card));
 
         assertThrows(ForbiddenOperationException.class, () -> cardService.blockCard(cardNumber, user));
-        verify(encryptionService).encrypt(cardNumber);
-        verify(cardRepository).findByEncryptedCardNumberAndOwner(encryptedCardNumber, user);
+        verify(cardNumberHashService).hash(cardNumber);
+        verify(cardRepository).findByCardNumberHashAndOwner(cardNumberHash, user);
         verify(cardRepository, never()).save(any(Card.class));
     }
 
     @Test
     void blockAnyCard_CardExists_SuccessfullyBlocked() {
-        when(encryptionService.encrypt(cardNumber)).thenReturn(encryptedCardNumber);
-        when(cardRepository.findByEncryptedCardNumber(encryptedCardNumber)).thenReturn(Optional.of(card));
+        when(cardNumberHashService.hash(cardNumber)).thenReturn(cardNumberHash);
+        when(cardRepository.findByCardNumberHash(cardNumberHash)).thenReturn(Optional.of(card));
 
         cardService.blockAnyCard(cardNumber);
 
         assertEquals(CardStatus.BLOCKED, card.getStatus());
-        verify(encryptionService).encrypt(cardNumber);
-        verify(cardRepository).findByEncryptedCardNumber(encryptedCardNumber);
+        verify(cardNumberHashService).hash(cardNumber);
+        verify(cardRepository).findByCardNumberHash(cardNumberHash);
         verify(cardRepository).save(card);
     }
 
     @Test
     void blockAnyCard_CardNotFound_ThrowsNotFoundException() {
-        when(encryptionService.encrypt(cardNumber)).thenReturn(encryptedCardNumber);
-        when(cardRepository.findByEncryptedCardNumber(encryptedCardNumber)).thenReturn(Optional.empty());
+        when(cardNumberHashService.hash(cardNumber)).thenReturn(cardNumberHash);
+        when(cardRepository.findByCardNumberHash(cardNumberHash)).thenReturn(Optional.empty());
 
         assertThrows(NotFoundException.class, () -> cardService.blockAnyCard(cardNumber));
-        verify(encryptionService).encrypt(cardNumber);
-        verify(cardRepository).findByEncryptedCardNumber(encryptedCardNumber);
+        verify(cardNumberHashService).hash(cardNumber);
+        verify(cardRepository).findByCardNumberHash(cardNumberHash);
         verify(cardRepository, never()).save(any(Card.class));
     }
 
     @Test
     void activateCardByNumber_CardExists_SuccessfullyActivated() {
         card.setStatus(CardStatus.BLOCKED);
-        when(encryptionService.encrypt(cardNumber)).thenReturn(encryptedCardNumber);
-        when(cardRepository.findByEncryptedCardNumber(encryptedCardNumber)).thenReturn(Optional.of(card));
+        when(cardNumberHashService.hash(cardNumber)).thenReturn(cardNumberHash);
+        when(cardRepository.findByCardNumberHash(cardNumberHash)).thenReturn(Optional.of(card));
 
         cardService.activateCardByNumber(cardNumber);
 
         assertEquals(CardStatus.ACTIVE, card.getStatus());
-        verify(encryptionService).encrypt(cardNumber);
-        verify(cardRepository).findByEncryptedCardNumber(encryptedCardNumber);
+        verify(cardNumberHashService).hash(cardNumber);
+        verify(cardRepository).findByCardNumberHash(cardNumberHash);
         verify(cardRepository).save(card);
     }
 
     @Test
     void activateCardByNumber_AlreadyActive_ThrowsForbiddenOperationException() {
-        when(encryptionService.encrypt(cardNumber)).thenReturn(encryptedCardNumber);
-        when(cardRepository.findByEncryptedCardNumber(encryptedCardNumber)).thenReturn(Optional.of(card));
+        when(cardNumberHashService.hash(cardNumber)).thenReturn(cardNumberHash);
+        when(cardRepository.findByCardNumberHash(cardNumberHash)).thenReturn(Optional.of(card));
 
         assertThrows(ForbiddenOperationException.class, () -> cardService.activateCardByNumber(cardNumber));
-        verify(encryptionService).encrypt(cardNumber);
-        verify(cardRepository).findByEncryptedCardNumber(encryptedCardNumber);
+        verify(cardNumberHashService).hash(cardNumber);
+        verify(cardRepository).findByCardNumberHash(cardNumberHash);
         verify(cardRepository, never()).save(any(Card.class));
     }
 
     @Test
     void deleteCard_CardExists_SuccessfullyDeleted() {
-        when(encryptionService.encrypt(cardNumber)).thenReturn(encryptedCardNumber);
-        when(cardRepository.findByEncryptedCardNumber(encryptedCardNumber)).thenReturn(Optional.of(card));
+        when(cardNumberHashService.hash(cardNumber)).thenReturn(cardNumberHash);
+        when(cardRepository.findByCardNumberHash(cardNumberHash)).thenReturn(Optional.of(card));
 
         cardService.deleteCard(cardNumber);
 
-        verify(encryptionService).encrypt(cardNumber);
-        verify(cardRepository).findByEncryptedCardNumber(encryptedCardNumber);
+        verify(cardNumberHashService).hash(cardNumber);
+        verify(cardRepository).findByCardNumberHash(cardNumberHash);
         verify(cardRepository).delete(card);
     }
 
     @Test
     void deleteCard_CardNotFound_ThrowsNotFoundException() {
-        when(encryptionService.encrypt(cardNumber)).thenReturn(encryptedCardNumber);
-        when(cardRepository.findByEncryptedCardNumber(encryptedCardNumber)).thenReturn(Optional.empty());
+        when(cardNumberHashService.hash(cardNumber)).thenReturn(cardNumberHash);
+        when(cardRepository.findByCardNumberHash(cardNumberHash)).thenReturn(Optional.empty());
 
         assertThrows(NotFoundException.class, () -> cardService.deleteCard(cardNumber));
-        verify(encryptionService).encrypt(cardNumber);
-        verify(cardRepository).findByEncryptedCardNumber(encryptedCardNumber);
+        verify(cardNumberHashService).hash(cardNumber);
+        verify(cardRepository).findByCardNumberHash(cardNumberHash);
         verify(cardRepository, never()).delete(any(Card.class));
     }
 
     @Test
     void deposit_CardExists_SuccessfullyDeposited() {
         BigDecimal amount = new BigDecimal("100.00");
-        when(encryptionService.encrypt(cardNumber)).thenReturn(encryptedCardNumber);
-        when(cardRepository.findByEncryptedCardNumberAndOwner(encryptedCardNumber, user)).thenReturn(Optional.of(card));
+        when(cardNumberHashService.hash(cardNumber)).thenReturn(cardNumberHash);
+        when(cardRepository.findByCardNumberHashAndOwner(cardNumberHash, user)).thenReturn(Optional.of(card));
+
+        when(cardRepository.deposit(eq(card.getId()), eq(amount), any(LocalDateTime.class))).thenReturn(1);
 
         cardService.deposit(cardNumber, amount, user);
 
-        assertEquals(amount, card.getBalance());
-        verify(encryptionService).encrypt(cardNumber);
-        verify(cardRepository).findByEncryptedCardNumberAndOwner(encryptedCardNumber, user);
-        verify(cardRepository).save(card);
+        verify(cardNumberHashService).hash(cardNumber);
+        verify(cardRepository).findByCardNumberHashAndOwner(cardNumberHash, user);
+        verify(cardRepository).deposit(eq(card.getId()), eq(amount), any(LocalDateTime.class));
+        verify(ledgerService).recordDeposit(eq(card.getId()), eq(amount), any(LocalDateTime.class));
+        verify(eventPublisher).publishEvent(any(CardCache.CardsChanged.class));
+        verify(cardRepository, never()).save(any(Card.class));
     }
 
     @Test
     void deposit_CardBlocked_ThrowsForbiddenOperationException() {
         BigDecimal amount = new BigDecimal("100.00");
         card.setStatus(CardStatus.BLOCKED);
-        when(encryptionService.encrypt(cardNumber)).thenReturn(encryptedCardNumber);
-        when(cardRepository.findByEncryptedCardNumberAndOwner(encryptedCardNumber, user)).thenReturn(Optional.of(card));
+        when(cardNumberHashService.hash(cardNumber)).thenReturn(cardNumberHash);
+        when(cardRepository.findByCardNumberHashAndOwner(cardNumberHash, user)).thenReturn(Optional.of(card));
 
         assertThrows(ForbiddenOperationException.class, () -> cardService.deposit(cardNumber, amount, user));
-        verify(encryptionService).encrypt(cardNumber);
-        verify(cardRepository).findByEncryptedCardNumberAndOwner(encryptedCardNumber, user);
-        verify(cardRepository, never()).save(any(Card.class));
+        verify(cardNumberHashService).hash(cardNumber);
+        verify(cardRepository).findByCardNumberHashAndOwner(cardNumberHash, user);
+        verify(cardRepository, never()).deposit(any(), any(), any());
+        verifyNoInteractions(ledgerService);
+    }
+
+    @Test
+    void blockAnyCard_BackfillPending_FallsBackToEncryptedNumber() {
+        when(cardBackfillJob.isComplete()).thenReturn(false);
+        when(cardNumberHashService.hash(cardNumber)).thenReturn(cardNumberHash);
+        when(cardRepository.findByCardNumberHash(cardNumberHash)).thenReturn(Optional.empty());
+        when(encryptionService.encrypt(cardNumber)).thenReturn(encryptedCardNumber);
+        when(cardRepository.findByEncryptedCardNumber(encryptedCardNumber)).thenReturn(Optional.of(card));
+
+        cardService.blockAnyCard(cardNumber);
+
+        assertEquals(CardStatus.BLOCKED, card.getStatus());
+        verify(cardRepository).save(card);
     }
 
     @Test
@@ -288,26 +355,54 @@ class CardServiceImplTest {
     @Test
     void searchCards_WithFilters_ReturnsPagedCards() {
         Pageable pageable = PageRequest.of(0, 10);
-        Page<Card> page = new PageImpl<>(List.of(card), pageable, 1);
-        when(cardRepository.findAll(any(Specification.class), eq(pageable))).thenReturn(page);
+        when(cardRepository.findPageContent(any(Specification.class), eq(pageable))).thenReturn(List.of(card));
 
         Page<Card> result = cardService.searchCards(user, CardStatus.ACTIVE, BigDecimal.ZERO, new BigDecimal("1000"), pageable);
 
         assertEquals(1, result.getTotalElements());
         assertEquals(card, result.getContent().get(0));
-        verify(cardRepository).findAll(any(Specification.class), eq(pageable));
+        verify(cardRepository).findPageContent(any(Specification.class), eq(pageable));
     }
 
     @Test
-    void searchCards_NoFilters_ReturnsPagedCards() {
+    void searchCards_PartialFirstPage_DoesNotCount() {
         Pageable pageable = PageRequest.of(0, 10);
-        Page<Card> page = new PageImpl<>(List.of(card), pageable, 1);
-        when(cardRepository.findAll(any(Specification.class), eq(pageable))).thenReturn(page);
+        when(cardRepository.findPageContent(any(Specification.class), eq(pageable))).thenReturn(List.of(card));
 
         Page<Card> result = cardService.searchCards(user, null, null, null, pageable);
 
         assertEquals(1, result.getTotalElements());
-        assertEquals(card, result.getContent().get(0));
-        verify(cardRepository).findAll(any(Specification.class), eq(pageable));
+        verifyNoInteractions(cardCountCache);
+        verify(cardRepository, never()).count(any(Specification.class));
+    }
+
+    @Test
+    void searchCards_FullPage_TakesTotalFromCountCache() {
+        Pageable pageable = PageRequest.of(0, 1);
+        when(cardRepository.findPageContent(any(Specification.class), eq(pageable))).thenReturn(List.of(card));
+        when(cardCountCache.get(eq(user.getId()), isNull(), isNull(), isNull(), any())).thenReturn(25L);
+
+        Page<Card> result = cardService.searchCards(user, null, null, null, pageable);
+
+        assertEquals(25, result.getTotalElements());
+        assertEquals(25, result.getTotalPages());
+    }
+
+    @Test
+    void scrollCards_MoreThanPage_ReturnsCursorOfLastCard() {
+        card.setCreatedAt(LocalDateTime.of(2024, 5, 1, 12, 0));
+        Card older = Card.builder().id(2L).createdAt(LocalDateTime.of(2024, 4, 1, 12, 0)).build();
+        when(cardRepository.findBy(any(Specification.class), any())).thenReturn(List.of(card, older));
+
+        KeysetPage<Card> result = cardService.scrollCards(user, null, null, null, null, 1);
+
+        assertEquals(List.of(card), result.content());
+        assertTrue(result.hasNext());
+        assertEquals(new KeysetCursor(card.getCreatedAt(), card.getId()), KeysetCursor.decode(result.nextCursor()));
+    }
+
+    private static CardSummary summaryOf(Card card) {
+        return new CardSummary(card.getId(), card.getLast4(), card.getEncryptedCardNumber(),
+                card.getExpiryDate(), card.getStatus(), card.getBalance());
     }
-}
\ No newline at end of file
+}
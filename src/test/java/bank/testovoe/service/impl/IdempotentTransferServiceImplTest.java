@@ -0,0 +1,160 @@
+package bank.testovoe.service.impl;
+
+import bank.testovoe.dto.transfer.TransferRequest;
+import bank.testovoe.dto.transfer.TransferResponse;
+import bank.testovoe.exception.ConflictException;
+import bank.testovoe.exception.InsufficientFundsException;
+import bank.testovoe.job.CardBackfillJob;
+import bank.testovoe.mapper.CardMapper;
+import bank.testovoe.mapper.TransferMapper;
+import bank.testovoe.model.Card;
+import bank.testovoe.model.CardStatus;
+import bank.testovoe.model.Role;
+import bank.testovoe.model.User;
+import bank.testovoe.repository.CardBalanceStripeRepository;
+import bank.testovoe.repository.CardRepository;
+import bank.testovoe.repository.IdempotencyKeyRepository;
+import bank.testovoe.repository.TransferRepository;
+import bank.testovoe.repository.UserRepository;
+import bank.testovoe.service.CardNumberHashService;
+import bank.testovoe.service.EncryptionService;
+import bank.testovoe.service.IdempotentTransferService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({SimpleMeterRegistry.class, IdempotentTransferServiceImpl.class, TransferServiceImpl.class, LedgerServiceImpl.class, BalanceStripeServiceImpl.class, CardBalanceStripeRepository.class, EncryptionServiceImpl.class,
+        CardNumberHashServiceImpl.class, CardBackfillJob.class, TransferMapper.class, CardMapper.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IdempotentTransferServiceImplTest {
+
+    private static final String FROM = "6000000000000001";
+    private static final String TO = "6000000000000002";
+
+    @Autowired
+    private IdempotentTransferService idempotentTransferService;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private CardNumberHashService cardNumberHashService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransferRepository transferRepository;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyKeyRepository.deleteAll();
+        transferRepository.deleteAll();
+        cardRepository.deleteAll();
+        userRepository.deleteAll();
+
+        user = userRepository.save(User.builder().email("idempotent@test.com").password("x").role(Role.USER).build());
+        saveCard(FROM, new BigDecimal("100.00"));
+        saveCard(TO, BigDecimal.ZERO);
+    }
+
+    @Test
+    void transfer_RepeatedKey_ReturnsOriginalTransfer() {
+        TransferRequest request = new TransferRequest(FROM, TO, new BigDecimal("10.00"));
+
+        TransferResponse first = idempotentTransferService.transfer(user, "key-1", request);
+        TransferResponse retry = idempotentTransferService.transfer(user, "key-1", request);
+
+        assertEquals(first, retry);
+        assertEquals(1, transferRepository.count());
+        assertEquals(0, new BigDecimal("90.00").compareTo(balanceOf(FROM)));
+    }
+
+    @Test
+    void transfer_RepeatedKeyWithDifferentRequest_ThrowsConflict() {
+        idempotentTransferService.transfer(user, "key-2", new TransferRequest(FROM, TO, new BigDecimal("10.00")));
+
+        assertThrows(ConflictException.class, () -> idempotentTransferService.transfer(
+                user, "key-2", new TransferRequest(FROM, TO, new BigDecimal("20.00"))));
+        assertEquals(1, transferRepository.count());
+    }
+
+    @Test
+    void transfer_FailedTransfer_IsNotRecorded() {
+        TransferRequest request = new TransferRequest(FROM, TO, new BigDecimal("500.00"));
+
+        assertThrows(InsufficientFundsException.class, () -> idempotentTransferService.transfer(user, "key-3", request));
+
+        assertEquals(0, idempotencyKeyRepository.count());
+        assertThrows(InsufficientFundsException.class, () -> idempotentTransferService.transfer(user, "key-3", request));
+    }
+
+    @Test
+    void transfer_ConcurrentDuplicates_ExecuteOnce() throws Exception {
+        TransferRequest request = new TransferRequest(FROM, TO, new BigDecimal("1.00"));
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<TransferResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            responses.add(executor.submit(() -> {
+                start.await();
+                return idempotentTransferService.transfer(user, "key-4", request);
+            }));
+        }
+        start.countDown();
+        executor.shutdown();
+
+        TransferResponse first = responses.get(0).get();
+        for (Future<TransferResponse> response : responses) {
+            assertEquals(first, response.get());
+        }
+        assertEquals(1, transferRepository.count());
+        assertEquals(0, new BigDecimal("99.00").compareTo(balanceOf(FROM)));
+    }
+
+    private void saveCard(String number, BigDecimal balance) {
+        cardRepository.save(Card.builder()
+                .owner(user)
+                .encryptedCardNumber(encryptionService.encrypt(number))
+                .cardNumberHash(cardNumberHashService.hash(number))
+                .last4(number.substring(12))
+                .expiryDate(LocalDate.now().plusYears(3))
+                .status(CardStatus.ACTIVE)
+                .balance(balance)
+                .build());
+    }
+
+    private BigDecimal balanceOf(String number) {
+        return cardRepository.findByCardNumberHash(cardNumberHashService.hash(number)).orElseThrow().getBalance();
+    }
+}
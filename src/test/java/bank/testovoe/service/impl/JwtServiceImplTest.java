@@ -0,0 +1,76 @@
+package bank.testovoe.service.impl;
+
+import bank.testovoe.dto.auth.TokenClaims;
+import bank.testovoe.exception.JwtAuthenticationException;
+import bank.testovoe.model.Role;
+import bank.testovoe.model.User;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtServiceImplTest {
+
+    private static final String SECRET = "test-secret-test-secret-test-secret-0123456789";
+
+    private JwtServiceImpl jwtService;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        jwtService = new JwtServiceImpl(SECRET, 1000);
+        user = User.builder().id(7L).email("user@test.com").role(Role.USER).build();
+    }
+
+    @Test
+    void parseToken_ValidToken_ReturnsClaims() {
+        String token = jwtService.generateToken(user);
+
+        TokenClaims claims = jwtService.parseToken(token);
+
+        assertEquals(7L, claims.userId());
+        assertEquals("user@test.com", claims.email());
+        assertEquals(Role.USER, claims.role());
+        assertTrue(claims.expiresAt().isAfter(Instant.now()));
+    }
+
+    @Test
+    void parseToken_RepeatedCall_ReturnsCachedClaims() {
+        String token = jwtService.generateToken(user);
+
+        assertSame(jwtService.parseToken(token), jwtService.parseToken(token));
+    }
+
+    @Test
+    void parseToken_TamperedSignature_ThrowsJwtAuthenticationException() {
+        String token = jwtService.generateToken(user);
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertThrows(JwtAuthenticationException.class, () -> jwtService.parseToken(tampered));
+    }
+
+    @Test
+    void parseToken_ForeignKey_ThrowsJwtAuthenticationException() {
+        String foreign = new JwtServiceImpl("another-secret-another-secret-another-0123", 1000).generateToken(user);
+
+        assertThrows(JwtAuthenticationException.class, () -> jwtService.parseToken(foreign));
+    }
+
+    @Test
+    void parseToken_MissingRoleClaim_ThrowsJwtAuthenticationException() {
+        String token = Jwts.builder()
+                .setSubject("user@test.com")
+                .claim("uid", 7L)
+                .setExpiration(Date.from(Instant.now().plusSeconds(60)))
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes()), SignatureAlgorithm.HS256)
+                .compact();
+
+        assertThrows(JwtAuthenticationException.class, () -> jwtService.parseToken(token));
+    }
+}
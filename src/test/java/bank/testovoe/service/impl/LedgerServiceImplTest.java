@@ -0,0 +1,204 @@
+package bank.testovoe.service.impl;
+
+import bank.testovoe.dto.transfer.TransferRequest;
+import bank.testovoe.job.BalanceSnapshotJob;
+import bank.testovoe.job.CardBackfillJob;
+import bank.testovoe.model.BalanceSnapshot;
+import bank.testovoe.model.Card;
+import bank.testovoe.model.CardStatus;
+import bank.testovoe.model.Role;
+import bank.testovoe.model.User;
+import bank.testovoe.repository.BalanceSnapshotRepository;
+import bank.testovoe.repository.CardBalanceStripeRepository;
+import bank.testovoe.repository.CardRepository;
+import bank.testovoe.repository.LedgerEntryRepository;
+import bank.testovoe.repository.TransferRepository;
+import bank.testovoe.repository.UserRepository;
+import bank.testovoe.service.CardNumberHashService;
+import bank.testovoe.service.EncryptionService;
+import bank.testovoe.service.LedgerService;
+import bank.testovoe.service.TransferService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({SimpleMeterRegistry.class, TransferServiceImpl.class, LedgerServiceImpl.class, BalanceStripeServiceImpl.class, CardBalanceStripeRepository.class, BalanceSnapshotJob.class,
+        EncryptionServiceImpl.class, CardNumberHashServiceImpl.class, CardBackfillJob.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LedgerServiceImplTest {
+
+    private static final String A = "7100000000000001";
+    private static final String B = "7100000000000002";
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private BalanceSnapshotJob balanceSnapshotJob;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private CardNumberHashService cardNumberHashService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransferRepository transferRepository;
+
+    @Autowired
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    @Autowired
+    private BalanceSnapshotRepository balanceSnapshotRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private SimpleMeterRegistry meterRegistry;
+
+    private User user;
+    private Card a;
+    private Card b;
+    private LocalDateTime opened;
+
+    @BeforeEach
+    void setUp() {
+        ledgerEntryRepository.deleteAll();
+        balanceSnapshotRepository.deleteAll();
+        transferRepository.deleteAll();
+        cardRepository.deleteAll();
+        userRepository.deleteAll();
+
+        user = userRepository.save(User.builder().email("ledger@test.com").password("x").role(Role.USER).build());
+        opened = now().minusMinutes(1);
+        a = saveCard(A, new BigDecimal("100.00"));
+        b = saveCard(B, new BigDecimal("50.00"));
+    }
+
+    @Test
+    void balanceAsOf_AfterTransfers_MatchesCardBalance() {
+        transferService.transfer(user, A, B, new BigDecimal("30.00"));
+        transferService.transferAll(user, List.of(new TransferRequest(B, A, new BigDecimal("5.00"))), true);
+
+        assertEquals(4, ledgerEntryRepository.count());
+        assertBalancesMatchCards(now());
+    }
+
+    @Test
+    void balanceAsOf_PastTime_IgnoresLaterEntries() {
+        transferService.transfer(user, A, B, new BigDecimal("30.00"));
+        LocalDateTime afterFirst = now();
+        transferService.transfer(user, A, B, new BigDecimal("20.00"));
+
+        assertEquals(0, new BigDecimal("100.00").compareTo(ledgerService.balanceAsOf(a.getId(), opened)));
+        assertEquals(0, new BigDecimal("70.00").compareTo(ledgerService.balanceAsOf(a.getId(), afterFirst)));
+        assertEquals(0, new BigDecimal("80.00").compareTo(ledgerService.balanceAsOf(b.getId(), afterFirst)));
+        assertBalancesMatchCards(now());
+    }
+
+    @Test
+    void snapshot_FoldsEntriesAndKeepsBalances() {
+        transferService.transfer(user, A, B, new BigDecimal("30.00"));
+        LocalDateTime cutoff = now();
+
+        assertEquals(2, balanceSnapshotJob.snapshot(cutoff));
+        assertEquals(0, balanceSnapshotJob.snapshot(cutoff));
+
+        BalanceSnapshot snapshot = balanceSnapshotRepository
+                .findFirstByCardIdAndAsOfLessThanEqualOrderByAsOfDesc(a.getId(), cutoff)
+                .orElseThrow();
+        assertEquals(0, new BigDecimal("70.00").compareTo(snapshot.getBalance()));
+
+        transferService.transfer(user, B, A, new BigDecimal("10.00"));
+        assertBalancesMatchCards(now());
+    }
+
+    @Test
+    void snapshot_EntryCommittedAfterEarlierSnapshot_FoldedIntoNextSnapshot() {
+        transferService.transfer(user, A, B, new BigDecimal("30.00"));
+        LocalDateTime firstCutoff = now();
+        assertEquals(2, balanceSnapshotJob.snapshot(firstCutoff));
+
+        // A deposit stamped before the first snapshot that only commits after it was taken
+        transactionTemplate.executeWithoutResult(status -> {
+            cardRepository.deposit(a.getId(), new BigDecimal("5.00"), firstCutoff.minusSeconds(1));
+            ledgerService.recordDeposit(a.getId(), new BigDecimal("5.00"), firstCutoff.minusSeconds(1));
+        });
+        transferService.transfer(user, A, B, new BigDecimal("10.00"));
+        LocalDateTime secondCutoff = now();
+
+        assertEquals(2, balanceSnapshotJob.snapshot(secondCutoff));
+
+        BalanceSnapshot snapshot = balanceSnapshotRepository
+                .findFirstByCardIdAndAsOfLessThanEqualOrderByAsOfDesc(a.getId(), secondCutoff)
+                .orElseThrow();
+        assertEquals(0, new BigDecimal("65.00").compareTo(snapshot.getBalance()));
+        assertEquals(1.0, meterRegistry.counter("bank.ledger.snapshot.mismatches").count());
+        assertBalancesMatchCards(now());
+    }
+
+    /**
+     * Timestamps are stored with microsecond precision, so bounds compared with them are too.
+     */
+    private static LocalDateTime now() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
+    private void assertBalancesMatchCards(LocalDateTime asOf) {
+        for (Card card : cardRepository.findAll()) {
+            assertEquals(0, card.getBalance().compareTo(ledgerService.balanceAsOf(card.getId(), asOf)),
+                    "balance of card " + card.getId());
+        }
+    }
+
+    /**
+     * Cards are created with a balance, so they get the opening snapshot the ledger migration
+     * writes for cards that already exist.
+     */
+    private Card saveCard(String number, BigDecimal balance) {
+        Card card = cardRepository.save(Card.builder()
+                .owner(user)
+                .encryptedCardNumber(encryptionService.encrypt(number))
+                .cardNumberHash(cardNumberHashService.hash(number))
+                .last4(number.substring(12))
+                .expiryDate(LocalDate.now().plusYears(3))
+                .status(CardStatus.ACTIVE)
+                .balance(balance)
+                .build());
+        balanceSnapshotRepository.save(BalanceSnapshot.builder()
+                .cardId(card.getId())
+                .asOf(opened)
+                .balance(balance)
+                .build());
+        return card;
+    }
+}
@@ -0,0 +1,143 @@
+package bank.testovoe.service.impl;
+
+import bank.testovoe.dto.transfer.BulkTransferResult;
+import bank.testovoe.dto.transfer.TransferRequest;
+import bank.testovoe.exception.BadRequestException;
+import bank.testovoe.job.CardBackfillJob;
+import bank.testovoe.model.Card;
+import bank.testovoe.model.CardStatus;
+import bank.testovoe.model.Role;
+import bank.testovoe.model.User;
+import bank.testovoe.repository.CardBalanceStripeRepository;
+import bank.testovoe.repository.CardRepository;
+import bank.testovoe.repository.TransferRepository;
+import bank.testovoe.repository.UserRepository;
+import bank.testovoe.service.CardNumberHashService;
+import bank.testovoe.service.EncryptionService;
+import bank.testovoe.service.TransferService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({SimpleMeterRegistry.class, TransferServiceImpl.class, LedgerServiceImpl.class, BalanceStripeServiceImpl.class, CardBalanceStripeRepository.class, EncryptionServiceImpl.class, CardNumberHashServiceImpl.class, CardBackfillJob.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TransferServiceImplBulkTest {
+
+    private static final String A = "7000000000000001";
+    private static final String B = "7000000000000002";
+    private static final String BLOCKED = "7000000000000003";
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private CardNumberHashService cardNumberHashService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransferRepository transferRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        transferRepository.deleteAll();
+        cardRepository.deleteAll();
+        userRepository.deleteAll();
+
+        user = userRepository.save(User.builder().email("bulk@test.com").password("x").role(Role.USER).build());
+        saveCard(A, CardStatus.ACTIVE, new BigDecimal("100.00"));
+        saveCard(B, CardStatus.ACTIVE, new BigDecimal("100.00"));
+        saveCard(BLOCKED, CardStatus.BLOCKED, new BigDecimal("100.00"));
+    }
+
+    @Test
+    void transferAll_ManyItems_AppliesAllAndKeepsRunningBalance() {
+        List<TransferRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            requests.add(i % 2 == 0
+                    ? new TransferRequest(A, B, new BigDecimal("1.00"))
+                    : new TransferRequest(B, A, new BigDecimal("0.50")));
+        }
+
+        List<BulkTransferResult> results = transferService.transferAll(user, requests, false);
+
+        assertTrue(results.stream().allMatch(BulkTransferResult::isApplied));
+        assertEquals(120, transferRepository.count());
+        assertEquals(0, new BigDecimal("70.00").compareTo(balanceOf(A)));
+        assertEquals(0, new BigDecimal("130.00").compareTo(balanceOf(B)));
+    }
+
+    @Test
+    void transferAll_NonStrict_ReportsRejectedItemsAndAppliesTheRest() {
+        List<BulkTransferResult> results = transferService.transferAll(user, List.of(
+                new TransferRequest(A, B, new BigDecimal("60.00")),
+                new TransferRequest(A, B, new BigDecimal("60.00")),
+                new TransferRequest(A, BLOCKED, new BigDecimal("1.00")),
+                new TransferRequest(A, "7999999999999999", new BigDecimal("1.00")),
+                new TransferRequest(B, A, new BigDecimal("10.00"))
+        ), false);
+
+        assertEquals(List.of(true, false, false, false, true),
+                results.stream().map(BulkTransferResult::isApplied).toList());
+        assertEquals("Insufficient funds", results.get(1).error());
+        assertEquals("Both cards must be active", results.get(2).error());
+        assertEquals("Destination card not found", results.get(3).error());
+        assertEquals(2, transferRepository.count());
+        assertEquals(0, new BigDecimal("50.00").compareTo(balanceOf(A)));
+        assertEquals(0, new BigDecimal("150.00").compareTo(balanceOf(B)));
+    }
+
+    @Test
+    void transferAll_Strict_RollsBackEverythingOnFirstRejection() {
+        BadRequestException ex = assertThrows(BadRequestException.class, () -> transferService.transferAll(user, List.of(
+                new TransferRequest(A, B, new BigDecimal("10.00")),
+                new TransferRequest(A, BLOCKED, new BigDecimal("1.00"))
+        ), true));
+
+        assertTrue(ex.getMessage().startsWith("Transfer #1"));
+        assertEquals(0, transferRepository.count());
+        assertEquals(0, new BigDecimal("100.00").compareTo(balanceOf(A)));
+    }
+
+    private void saveCard(String number, CardStatus status, BigDecimal balance) {
+        cardRepository.save(Card.builder()
+                .owner(user)
+                .encryptedCardNumber(encryptionService.encrypt(number))
+                .cardNumberHash(cardNumberHashService.hash(number))
+                .last4(number.substring(12))
+                .expiryDate(LocalDate.now().plusYears(3))
+                .status(status)
+                .balance(balance)
+                .build());
+    }
+
+    private BigDecimal balanceOf(String number) {
+        return cardRepository.findByCardNumberHash(cardNumberHashService.hash(number)).orElseThrow().getBalance();
+    }
+}
@@ -0,0 +1,209 @@
+package bank.testovoe.service.impl;
+
+import bank.testovoe.dto.transfer.TransferRequest;
+import bank.testovoe.exception.InsufficientFundsException;
+import bank.testovoe.job.CardBackfillJob;
+import bank.testovoe.model.Card;
+import bank.testovoe.model.CardStatus;
+import bank.testovoe.model.Role;
+import bank.testovoe.model.User;
+import bank.testovoe.repository.CardBalanceStripeRepository;
+import bank.testovoe.repository.CardRepository;
+import bank.testovoe.repository.TransferRepository;
+import bank.testovoe.repository.UserRepository;
+import bank.testovoe.service.BalanceStripeService;
+import bank.testovoe.service.CardNumberHashService;
+import bank.testovoe.service.EncryptionService;
+import bank.testovoe.service.TransferService;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({SimpleMeterRegistry.class, TransferServiceImpl.class, LedgerServiceImpl.class, BalanceStripeServiceImpl.class, CardBalanceStripeRepository.class, EncryptionServiceImpl.class, CardNumberHashServiceImpl.class, CardBackfillJob.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TransferServiceImplConcurrencyTest {
+
+    private static final int CARDS = 8;
+    private static final int THREADS = 16;
+    private static final int TRANSFERS_PER_THREAD = 150;
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000.00");
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private CardNumberHashService cardNumberHashService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransferRepository transferRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private SimpleMeterRegistry meterRegistry;
+
+    @Autowired
+    private BalanceStripeService balanceStripeService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User user;
+    private final List<String> cardNumbers = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        transferRepository.deleteAll();
+        cardRepository.deleteAll();
+        userRepository.deleteAll();
+        meterRegistry.clear();
+
+        user = userRepository.save(User.builder().email("stress@test.com").password("x").role(Role.USER).build());
+        for (int i = 0; i < CARDS; i++) {
+            String number = String.format("40000000000000%02d", i);
+            cardNumbers.add(number);
+            cardRepository.save(Card.builder()
+                    .owner(user)
+                    .encryptedCardNumber(encryptionService.encrypt(number))
+                    .cardNumberHash(cardNumberHashService.hash(number))
+                    .expiryDate(LocalDate.now().plusYears(3))
+                    .status(CardStatus.ACTIVE)
+                    .balance(INITIAL_BALANCE)
+                    .build());
+        }
+    }
+
+    @Test
+    void concurrentTransfers_InBothDirections_ConserveTotalBalance() throws InterruptedException {
+        runConcurrentTransfers();
+    }
+
+    @Test
+    void concurrentTransfers_WithStripedCards_ConserveTotalBalance() throws InterruptedException {
+        List<Card> cards = cardRepository.findAll();
+        balanceStripeService.stripe(cards.get(0).getId(), 4);
+        balanceStripeService.stripe(cards.get(1).getId(), 8);
+
+        runConcurrentTransfers();
+
+        assertEquals(0, (long) jdbcTemplate.queryForObject(
+                "select count(*) from card_balance_stripe where balance < 0", Long.class));
+        balanceStripeService.unstripe(cards.get(0).getId());
+        BigDecimal total = cardRepository.findAll().stream().map(Card::getEffectiveBalance).reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertEquals(0, INITIAL_BALANCE.multiply(BigDecimal.valueOf(CARDS)).compareTo(total));
+    }
+
+    @Test
+    void transfer_StripedCardWithSplitBalance_DrawsStripesAndCardBalance() {
+        Card card = cardRepository.findAll().get(0);
+        balanceStripeService.stripe(card.getId(), 4);
+        // 100 in stripes (no single stripe covers 120) and 50 deposited to card.balance afterwards
+        jdbcTemplate.update("update card_balance_stripe set balance = 50 where card_id = ? and stripe < 2", card.getId());
+        jdbcTemplate.update("update card set balance = 50 where id = ?", card.getId());
+        String number = cardNumbers.get(0);
+
+        transferService.transfer(user, number, cardNumbers.get(1), new BigDecimal("120.00"));
+        assertEquals(0, new BigDecimal("30.00").compareTo(effectiveBalance(card)));
+
+        transferService.transferAll(user, List.of(new TransferRequest(number, cardNumbers.get(2), new BigDecimal("25.00"))), true);
+        assertEquals(0, new BigDecimal("5.00").compareTo(effectiveBalance(card)));
+
+        assertThrows(InsufficientFundsException.class,
+                () -> transferService.transfer(user, number, cardNumbers.get(1), new BigDecimal("10.00")));
+        assertEquals(0, new BigDecimal("5.00").compareTo(effectiveBalance(card)));
+        assertEquals(0, (long) jdbcTemplate.queryForObject(
+                "select count(*) from card_balance_stripe where balance < 0", Long.class));
+    }
+
+    private BigDecimal effectiveBalance(Card card) {
+        return cardRepository.findById(card.getId()).orElseThrow().getEffectiveBalance();
+    }
+
+    private void runConcurrentTransfers() throws InterruptedException {
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger insufficient = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        for (int t = 0; t < THREADS; t++) {
+            executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    int from = random.nextInt(CARDS);
+                    int to = (from + 1 + random.nextInt(CARDS - 1)) % CARDS;
+                    BigDecimal amount = BigDecimal.valueOf(random.nextInt(1, 50_000), 2);
+                    try {
+                        transferService.transfer(user, cardNumbers.get(from), cardNumbers.get(to), amount);
+                        succeeded.incrementAndGet();
+                    } catch (InsufficientFundsException e) {
+                        insufficient.incrementAndGet();
+                    } catch (Exception e) {
+                        log.error("Unexpected transfer failure", e);
+                        failed.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+
+        long startedAt = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES), "Transfers did not finish in time");
+        double seconds = (System.nanoTime() - startedAt) / 1e9;
+        log.warn("{} transfers ({} rejected for funds) in {}s: {} transfers/s",
+                succeeded.get(), insufficient.get(), seconds, (int) ((THREADS * TRANSFERS_PER_THREAD) / seconds));
+
+        List<Card> cards = cardRepository.findAll();
+        BigDecimal total = cards.stream().map(Card::getEffectiveBalance).reduce(BigDecimal.ZERO, BigDecimal::add);
+
+        assertEquals(0, failed.get(), "No transfer may fail with a lock or deadlock error");
+        assertEquals(THREADS * TRANSFERS_PER_THREAD, succeeded.get() + insufficient.get());
+        assertEquals(0, INITIAL_BALANCE.multiply(BigDecimal.valueOf(CARDS)).compareTo(total));
+        assertTrue(cards.stream().allMatch(c -> c.getEffectiveBalance().signum() >= 0));
+        assertEquals(succeeded.get(), transferRepository.count());
+        assertEquals(succeeded.get(), transferCount("success"));
+        assertEquals(insufficient.get(), transferCount("insufficient_funds"));
+    }
+
+    private long transferCount(String outcome) {
+        Timer timer = meterRegistry.find("bank.transfer").tag("outcome", outcome).timer();
+        return timer == null ? 0 : timer.count();
+    }
+}
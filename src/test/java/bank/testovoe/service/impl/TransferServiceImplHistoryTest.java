@@ -0,0 +1,149 @@
+package bank.testovoe.service.impl;
+
+import bank.testovoe.dto.KeysetPage;
+import bank.testovoe.dto.transfer.TransferHistoryRow;
+import bank.testovoe.exception.BadRequestException;
+import bank.testovoe.job.CardBackfillJob;
+import bank.testovoe.model.Card;
+import bank.testovoe.model.CardStatus;
+import bank.testovoe.model.Role;
+import bank.testovoe.model.Transfer;
+import bank.testovoe.model.User;
+import bank.testovoe.repository.CardBalanceStripeRepository;
+import bank.testovoe.repository.CardRepository;
+import bank.testovoe.repository.TransferRepository;
+import bank.testovoe.repository.UserRepository;
+import bank.testovoe.service.CardNumberHashService;
+import bank.testovoe.service.EncryptionService;
+import bank.testovoe.service.TransferService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({SimpleMeterRegistry.class, TransferServiceImpl.class, LedgerServiceImpl.class, BalanceStripeServiceImpl.class, CardBalanceStripeRepository.class, EncryptionServiceImpl.class, CardNumberHashServiceImpl.class, CardBackfillJob.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TransferServiceImplHistoryTest {
+
+    private static final List<String> CARD_NUMBERS = List.of("5000000000000001", "5000000000000002", "5000000000000003");
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private CardNumberHashService cardNumberHashService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransferRepository transferRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+    private final List<Card> cards = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        transferRepository.deleteAll();
+        cardRepository.deleteAll();
+        userRepository.deleteAll();
+
+        user = userRepository.save(User.builder().email("history@test.com").password("x").role(Role.USER).build());
+        for (String number : CARD_NUMBERS) {
+            cards.add(cardRepository.save(Card.builder()
+                    .owner(user)
+                    .encryptedCardNumber(encryptionService.encrypt(number))
+                    .cardNumberHash(cardNumberHashService.hash(number))
+                    .last4(number.substring(12))
+                    .expiryDate(LocalDate.now().plusYears(3))
+                    .status(CardStatus.ACTIVE)
+                    .balance(new BigDecimal("1000.00"))
+                    .build()));
+        }
+        for (int i = 0; i < 23; i++) {
+            transferService.transfer(user, CARD_NUMBERS.get(i % 3), CARD_NUMBERS.get((i + 1) % 3), BigDecimal.ONE);
+        }
+    }
+
+    @Test
+    void getHistory_AllCards_PagesThroughEveryTransferNewestFirst() {
+        List<Long> expected = transferRepository.findAll().stream()
+                .sorted(Comparator.comparing(Transfer::getTimestamp).thenComparing(Transfer::getId).reversed())
+                .map(Transfer::getId)
+                .toList();
+
+        assertEquals(expected, readAll(null, null));
+    }
+
+    @Test
+    void getHistory_OneCard_ReturnsOutgoingAndIncoming() {
+        Card card = cards.get(0);
+        List<Long> expected = transferRepository.findAll().stream()
+                .filter(t -> t.getFromCard().getId().equals(card.getId()) || t.getToCard().getId().equals(card.getId()))
+                .sorted(Comparator.comparing(Transfer::getTimestamp).thenComparing(Transfer::getId).reversed())
+                .map(Transfer::getId)
+                .toList();
+
+        assertEquals(15, expected.size());
+        assertEquals(expected, readAll(card.getId(), null));
+    }
+
+    @Test
+    void getHistory_RangeAfterLastTransfer_ReturnsEmptyPage() {
+        KeysetPage<TransferHistoryRow> page = transferService.getHistory(
+                user, null, LocalDateTime.now().plusDays(1), null, null, 10);
+
+        assertTrue(page.content().isEmpty());
+        assertFalse(page.hasNext());
+    }
+
+    @Test
+    void getHistory_MasksFromProjection() {
+        TransferHistoryRow row = transferService.getHistory(user, null, null, null, null, 1).content().get(0);
+
+        assertTrue(CARD_NUMBERS.stream().anyMatch(n -> n.endsWith(row.fromLast4())));
+        assertNotEquals(row.fromLast4(), row.toLast4());
+    }
+
+    @Test
+    void getHistory_InvalidCursor_ThrowsBadRequest() {
+        assertThrows(BadRequestException.class,
+                () -> transferService.getHistory(user, null, null, null, "not-a-cursor", 10));
+    }
+
+    private List<Long> readAll(Long cardId, LocalDateTime from) {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            KeysetPage<TransferHistoryRow> page = transferService.getHistory(user, cardId, from, null, cursor, 5);
+            assertTrue(page.content().size() <= 5);
+            page.content().forEach(row -> ids.add(row.id()));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return ids;
+    }
+}